@@ -0,0 +1,310 @@
+/**
+ * A headless analysis service for Bohnenspiel, meant to run for a long time
+ * next to whatever asks the questions. It listens on a local TCP port and
+ * answers one line per request line:
+ *
+ *   analyse b0,...,b11 s0,s1 TURN [depth=d] [millis=t] [nodes=n]
+ *       -> bestmove h score v depth d nodes n pv h h ...
+ *   stats -> stats searches n nodes n nps x ...   (with -Dbohnenspiel.statistics=true)
+ *   ping -> pong
+ *   quit    closes the connection
+ *
+ * The board, stores and turn are as the Bohnenspiel constructor takes them,
+ * and the score is from the point of view of the player to move. Without a
+ * budget a request is searched for a second. Anything wrong with a request
+ * is answered with "error" and a reason, and the connection stays open.
+ *
+ * A client may send many requests without waiting; they are shared out between
+ * the engines, and the answers come back in the order the requests were sent.
+ * Any number of clients can be connected at once. All the engines share one
+ * transposition table, which stays warm from one request to the next.
+ * With statistics enabled, the engines' searches are also shown through JMX.
+ *
+ * java AnalysisServer [port] [engines] [tablebits]
+ */
+import java.io.*;
+import java.net.*;
+import java.nio.charset.*;
+import java.util.*;
+import java.util.concurrent.*;
+import javax.management.*;
+
+public class AnalysisServer
+{
+    // the port listened on, on the loopback address
+    private final int port;
+    // the engines, each a player of each colour that may only be used by one thread at a time
+    private final BlockingQueue<BohnenspielPlayer[]> engines;
+    // runs the searches, one per engine at a time
+    private final ExecutorService searchers;
+    // reads and writes the connections, two threads per client
+    private final ExecutorService connections;
+    // adds up the statistics of every search
+    private final SearchMonitor monitor = new SearchMonitor();
+    // the listening socket, once started
+    private volatile ServerSocket server;
+    
+    // the time budget of a request that gives no budget, in ms
+    private static final long defaultMillis = 1000;
+    // marks the end of a connection's answers
+    private static final Local closed = new Local(() -> null);
+    
+    /**
+     * Constructs a server on port of the loopback address, with n engines
+     * sharing a transposition table of 2^bits slots.
+     */
+    public AnalysisServer(int port, int n, int bits)
+    {
+        if (n < 1) throw new IllegalArgumentException("Bad engine count: " + n);
+        this.port = port;
+        TranspositionTable table = new TranspositionTable(bits, ReplacementPolicy.AGED);
+        engines = new ArrayBlockingQueue<>(n);
+        for (int k = 0; k < n; k++)
+        {
+            BohnenspielPlayer[] engine = new BohnenspielPlayer[Farbe.values().length];
+            for (Farbe f : Farbe.values())
+            {
+                engine[f.ordinal()] = new BohnenspielPlayer(f);
+                engine[f.ordinal()].setTable(table);
+                engine[f.ordinal()].setMonitor(monitor);
+            }
+            engines.add(engine);
+        }
+        searchers = Executors.newFixedThreadPool(n, daemon("analysis search"));
+        connections = Executors.newCachedThreadPool(daemon("analysis connection"));
+    }
+    
+    /**
+     * Returns a maker of daemon threads called name.
+     */
+    private static ThreadFactory daemon(String name)
+    {
+        return r -> {
+            Thread t = new Thread(r, name);
+            t.setDaemon(true);
+            return t;
+        };
+    }
+    
+    /**
+     * Returns the port listened on, which is only known after start if 0 was asked for.
+     */
+    public int getPort()
+    {
+        return server == null ? port : server.getLocalPort();
+    }
+    
+    /**
+     * Starts listening, and accepts connections on a thread of its own,
+     * which keeps the program running until stop.
+     */
+    public void start() throws IOException
+    {
+        server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        if (SearchStatistics.ENABLED)
+        {
+            try
+            {
+                monitor.register("AnalysisServer " + getPort());
+            }
+            catch (JMException e)
+            {
+                throw new IOException("Cannot register the search monitor", e);
+            }
+        }
+        new Thread(() -> {
+            try
+            {
+                while (!server.isClosed())
+                {
+                    Socket client = server.accept();
+                    connections.execute(() -> serve(client));
+                }
+            }
+            catch (IOException e)
+            {
+                // the socket was closed by stop
+            }
+        }, "analysis server").start();
+    }
+    
+    /**
+     * Stops listening and drops every connection and search.
+     */
+    public void stop() throws IOException
+    {
+        if (server != null) server.close();
+        searchers.shutdownNow();
+        connections.shutdownNow();
+    }
+    
+    /**
+     * Reads the requests of client, and hands each to the searchers as it comes;
+     * a second thread writes the answers in order as they complete.
+     */
+    private void serve(Socket client)
+    {
+        BlockingQueue<Future<String>> answers = new LinkedBlockingQueue<>();
+        try (Socket c = client;
+             BufferedReader in = new BufferedReader(new InputStreamReader(c.getInputStream(), StandardCharsets.US_ASCII));
+             PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(c.getOutputStream(), StandardCharsets.US_ASCII))))
+        {
+            Future<?> writer = connections.submit(() -> write(answers, out));
+            try
+            {
+                String line;
+                while ((line = in.readLine()) != null)
+                {
+                    String request = line.trim();
+                    if (request.equals("quit")) break;
+                    if (request.isEmpty()) continue;
+                    answers.add(submit(request));
+                }
+            }
+            finally
+            {
+                // the writer stops here even if reading failed
+                answers.add(closed);
+            }
+            writer.get();
+        }
+        catch (IOException | InterruptedException | ExecutionException e)
+        {
+            // the client went away; its pending searches still finish, unread
+        }
+    }
+    
+    /**
+     * Writes answers to out in order until the closing answer, flushing whenever
+     * the next one is not ready yet, so that a batch goes out in one piece.
+     */
+    private static Void write(BlockingQueue<Future<String>> answers, PrintWriter out) throws InterruptedException, ExecutionException
+    {
+        for (;;)
+        {
+            Future<String> next = answers.peek();
+            if (next == null || !next.isDone() && !(next instanceof Local)) out.flush();
+            next = answers.take();
+            if (next == closed) break;
+            if (next instanceof Local) ((Local) next).run();
+            out.println(next.get());
+        }
+        out.flush();
+        return null;
+    }
+    
+    /**
+     * An answer that needs no engine, worked out by the writer when its turn comes, 
+     * so that it reflects every request sent before it.
+     */
+    private static class Local extends FutureTask<String>
+    {
+        Local(Callable<String> answer)
+        {
+            super(answer);
+        }
+    }
+    
+    /**
+     * Returns the future answer to request.
+     */
+    private Future<String> submit(String request)
+    {
+        if (request.equals("ping"))  return new Local(() -> "pong");
+        if (request.equals("stats")) return new Local(this::stats);
+        return searchers.submit(() -> {
+            try
+            {
+                return analyse(request);
+            }
+            catch (RuntimeException e)
+            {
+                return "error " + e.getMessage();
+            }
+        });
+    }
+    
+    /**
+     * Answers an analyse request, borrowing an engine for the search.
+     */
+    private String analyse(String request) throws InterruptedException
+    {
+        String[] words = request.split("\\s+");
+        if (!words[0].equals("analyse") || words.length < 4)
+            throw new IllegalArgumentException("expected: analyse b0,...,b11 s0,s1 TURN [depth=d] [millis=t] [nodes=n]");
+        Bohnenspiel game = new Bohnenspiel(numbers(words[1]), numbers(words[2]), Farbe.valueOf(words[3]));
+        if (game.legalMoves() == 0) throw new IllegalArgumentException("no legal moves");
+        int depth = BohnenspielSearch.MAXPLY;
+        long millis = 0;
+        long nodes = 0;
+        for (int k = 4; k < words.length; k++)
+        {
+            String[] option = words[k].split("=", 2);
+            if (option.length != 2) throw new IllegalArgumentException("bad option: " + words[k]);
+            long value = Long.parseLong(option[1]);
+            if      (option[0].equals("depth"))  depth  = (int) value;
+            else if (option[0].equals("millis")) millis = value;
+            else if (option[0].equals("nodes"))  nodes  = value;
+            else throw new IllegalArgumentException("unknown option: " + option[0]);
+            if (value < 0) throw new IllegalArgumentException("negative option: " + words[k]);
+        }
+        if (depth < 1 || depth > BohnenspielSearch.MAXPLY) throw new IllegalArgumentException("bad depth: " + depth);
+        // a search to the deepest depth always gets a budget
+        if (depth == BohnenspielSearch.MAXPLY && millis <= 0 && nodes <= 0) millis = defaultMillis;
+    
+        BohnenspielPlayer[] engine = engines.take();
+        try
+        {
+            BohnenspielPlayer p = engine[game.getTurn().ordinal()];
+            p.setMaxDepth(depth);
+            p.setTimeLimit(millis);
+            p.setNodeLimit(nodes);
+            int move = p.chooseMove(game);
+            StringBuilder answer = new StringBuilder();
+            answer.append("bestmove ").append(move)
+                  .append(" score ").append(p.getScore())
+                  .append(" depth ").append(p.getDepth())
+                  .append(" nodes ").append(p.getNodes())
+                  .append(" pv");
+            for (int h : p.getPrincipalVariation(game, move)) answer.append(' ').append(h);
+            return answer.toString();
+        }
+        finally
+        {
+            engines.add(engine);
+        }
+    }
+    
+    /**
+     * Answers a stats request with what the monitor has recorded so far.
+     */
+    private String stats()
+    {
+        if (!SearchStatistics.ENABLED) return "error statistics are off; start with -Dbohnenspiel.statistics=true";
+        SearchStatistics s = monitor.snapshot();
+        return String.format("stats searches %d nodes %d nps %.0f ms %.1f cutoffs %.1f%% first %.1f%% hits %.1f%% depth %d ply %d",
+                             s.getSearches(), s.getNodes(), s.getNodesPerSecond(), s.getMillis(), s.getCutoffRate(),
+                             s.getFirstMoveCutoffRate(), s.getTableHitRate(), s.getMaxDepth(), s.getMaxPly());
+    }
+    
+    /**
+     * Parses a list of numbers separated by commas.
+     */
+    private static int[] numbers(String s)
+    {
+        String[] parts = s.split(",");
+        int[] xs = new int[parts.length];
+        for (int k = 0; k < parts.length; k++) xs[k] = Integer.parseInt(parts[k]);
+        return xs;
+    }
+    
+    public static void main(String[] args) throws IOException
+    {
+        int port    = args.length > 0 ? Integer.parseInt(args[0]) : 7370;
+        int n       = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        int bits    = args.length > 2 ? Integer.parseInt(args[2]) : 22;
+        AnalysisServer s = new AnalysisServer(port, n, bits);
+        s.start();
+        System.out.println("Analysing on " + InetAddress.getLoopbackAddress().getHostAddress() + ":" + s.getPort() + " with " + n + " engines");
+    }
+}
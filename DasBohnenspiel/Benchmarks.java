@@ -0,0 +1,226 @@
+/**
+ * Microbenchmarks for the engine: move generation, sowing, copying, 
+ * evaluation and fixed-depth search over a corpus of recorded positions. 
+ * Reports ns/op, bytes allocated per op and, for searches, nodes/sec. 
+ * 
+ * java Benchmarks                 runs every benchmark
+ * java Benchmarks -save file      also writes the ns/op of each benchmark to file
+ * java Benchmarks -check file     fails if any benchmark is more than 25% slower than in file
+ */
+import java.io.*;
+import java.lang.management.*;
+import java.util.*;
+
+public class Benchmarks
+{
+    // one benchmark: runs op number i and returns something to keep it alive
+    private interface Op
+    {
+        long run(int i);
+    }
+    
+    // the number of recorded positions
+    private static final int corpussize = 1024;
+    // how long each benchmark warms up and then runs, in nanoseconds
+    private static final long warmup  = 1000000000L;
+    private static final long measure = 2000000000L;
+    // how much slower than the saved figure counts as a regression
+    private static final double tolerance = 1.25;
+    
+    // the recorded positions, as games and as packed positions
+    private static Bohnenspiel[]       corpus;
+    private static PackedBohnenspiel[] packed;
+    // a legal move in each position, and the move from its fullest house
+    private static int[] moves;
+    private static int[] biggest;
+    // results are folded in here so that the JIT cannot drop the work
+    private static long sink;
+    // ns/op of each benchmark, in the order run
+    private static final Map<String, Double> results = new LinkedHashMap<>();
+    
+    /**
+     * Records the corpus: every position of games between random players 
+     * from a fixed seed, until there are enough.
+     */
+    private static void record()
+    {
+        Random r = new Random(3001);
+        List<Bohnenspiel> games = new ArrayList<>();
+        while (games.size() < corpussize)
+        {
+            Bohnenspiel game = new Bohnenspiel();
+            while (!game.isOver() && games.size() < corpussize)
+            {
+                games.add(game.copyGame(game.getTurn()));
+                int legal = game.legalMoves();
+                int h;
+                do h = r.nextInt(Bohnenspiel.numberofhouses); while ((legal >>> h & 1) == 0);
+                game.move(h + 1);
+            }
+        }
+        corpus = games.toArray(new Bohnenspiel[0]);
+        packed = new PackedBohnenspiel[corpussize];
+        moves  = new int[corpussize];
+        biggest = new int[corpussize];
+        for (int k = 0; k < corpussize; k++)
+        {
+            packed[k] = new PackedBohnenspiel(corpus[k]);
+            moves[k]  = 32 - Integer.numberOfLeadingZeros(corpus[k].legalMoves());
+            int turn = corpus[k].getTurn().ordinal() * Bohnenspiel.numberofhouses;
+            for (int h = 1; h <= Bohnenspiel.numberofhouses; h++)
+                if (corpus[k].getHouse(turn + h - 1) > corpus[k].getHouse(turn + biggest[k])) biggest[k] = h - 1;
+            biggest[k]++;
+        }
+    }
+    
+    /**
+     * Runs op until the time is up, then prints and returns its ns/op. 
+     * If nodes is not null it is read before and after to give nodes/sec.
+     */
+    private static double bench(String name, Op op, long[] nodes)
+    {
+        com.sun.management.ThreadMXBean mx = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long id = Thread.currentThread().getId();
+        // warm up
+        long end = System.nanoTime() + warmup;
+        for (int i = 0; System.nanoTime() < end; i++) sink += op.run(i & (corpussize - 1));
+        // measure in batches so that the clock is not read every op
+        long ops = 0;
+        long n0 = nodes == null ? 0 : nodes[0];
+        long bytes = mx.getThreadAllocatedBytes(id);
+        long start = System.nanoTime();
+        long now = start;
+        while (now - start < measure)
+        {
+            for (int i = 0; i < corpussize; i++) sink += op.run(i);
+            ops += corpussize;
+            now = System.nanoTime();
+        }
+        bytes = mx.getThreadAllocatedBytes(id) - bytes;
+        double ns = (double) (now - start) / ops;
+        String s = String.format("%-28s %12.1f ns/op %10.1f B/op", name, ns, (double) bytes / ops);
+        if (nodes != null) s += String.format(" %12.0f nodes/s", (nodes[0] - n0) * 1e9 / (now - start));
+        System.out.println(s);
+        results.put(name, ns);
+        return ns;
+    }
+    
+    /**
+     * Runs a fixed-depth chooseMove with search a over the corpus. The players have small 
+     * tables, emptied before every search so that no search reuses another's work.
+     */
+    private static void benchSearch(int depth, SearchAlgorithm a)
+    {
+        BohnenspielPlayer[] players = {new BohnenspielPlayer(Farbe.WEISSE), new BohnenspielPlayer(Farbe.SCHWARZ)};
+        for (BohnenspielPlayer p : players) 
+        {
+            p.setMaxDepth(depth);
+            p.setTableSize(12);
+            p.setAlgorithm(a);
+        }
+        long[] nodes = {0};
+        String name = a == SearchAlgorithm.MINIMAX ? "chooseMove depth " : "chooseMove " + a.name().toLowerCase() + " depth ";
+        bench(name + depth, i -> 
+        {
+            BohnenspielPlayer p = players[corpus[i].getTurn().ordinal()];
+            p.clearTable();
+            int h = p.chooseMove(corpus[i]);
+            nodes[0] += p.getNodes();
+            return h;
+        }, nodes);
+    }
+    
+    public static void main(String[] args) throws IOException
+    {
+        String save  = null;
+        String check = null;
+        for (int k = 0; k + 1 < args.length; k += 2)
+            if      (args[k].equals("-save"))  save  = args[k + 1];
+            else if (args[k].equals("-check")) check = args[k + 1];
+            else throw new IllegalArgumentException("Unknown option: " + args[k]);
+        
+        record();
+        Bohnenspiel[] work = new Bohnenspiel[corpussize];
+        for (int k = 0; k < corpussize; k++) work[k] = corpus[k].copyGame(corpus[k].getTurn());
+        BohnenspielSearch[] evaluators = {new BohnenspielSearch(Farbe.WEISSE, null, OrderingStrategy.INDEX), 
+                                          new BohnenspielSearch(Farbe.SCHWARZ, null, OrderingStrategy.INDEX)};
+        
+        bench("legalMoves",            i -> corpus[i].legalMoves(), null);
+        bench("legalMoves packed",     i -> packed[i].legalMoves(), null);
+        // the original loop unnamed, so that figures saved before there was a choice still measure 
+        // the same code, and the others by name; everything else runs with the default sowing
+        SowingStrategy sowing = Bohnenspiel.getSowing();
+        for (SowingStrategy s : SowingStrategy.values())
+        {
+            Bohnenspiel.setSowing(s);
+            String suffix = s == SowingStrategy.LOOP ? "" : " " + s.name().toLowerCase();
+            bench("makeMove + unmakeMove" + suffix, i -> 
+            {
+                work[i].makeMove(moves[i]);
+                long h = work[i].getHash();
+                work[i].unmakeMove();
+                return h;
+            }, null);
+            bench("makeMove fullest" + suffix, i -> 
+            {
+                work[i].makeMove(biggest[i]);
+                long h = work[i].getHash();
+                work[i].unmakeMove();
+                return h;
+            }, null);
+        }
+        Bohnenspiel.setSowing(sowing);
+        bench("copyGame",              i -> corpus[i].copyGame(corpus[i].getTurn()).getHash(), null);
+        bench("copyGame + move",       i -> 
+        {
+            Bohnenspiel g = corpus[i].copyGame(corpus[i].getTurn());
+            g.move(moves[i]);
+            return g.isOver() ? 1 : 0;
+        }, null);
+        bench("move packed",           i -> 
+        {
+            PackedBohnenspiel p = new PackedBohnenspiel(packed[i].getWeisse(), packed[i].getSchwarz());
+            p.move(moves[i]);
+            return p.getWeisse() ^ p.getSchwarz();
+        }, null);
+        bench("evaluate",              i -> evaluators[i & 1].evaluate(corpus[i]), null);
+        PositionBatch batch = new PositionBatch(corpussize);
+        for (PackedBohnenspiel p : packed) batch.add(p);
+        int[] scores = new int[corpussize];
+        bench("evaluate batch",        i -> 
+        {
+            // one call scores the next 64 positions, and the op is one position's share
+            if ((i & 63) == 0) batch.evaluate((i & 64) == 0 ? Farbe.WEISSE : Farbe.SCHWARZ, scores, i, i + 64);
+            return scores[i];
+        }, null);
+        for (SearchAlgorithm a : SearchAlgorithm.values())
+            for (int depth : new int[] {4, 6, 8}) benchSearch(depth, a);
+        System.out.println("(sink " + (sink & 1) + ")");
+        
+        if (save != null)
+           try (PrintWriter out = new PrintWriter(new FileWriter(save)))
+           {
+               for (Map.Entry<String, Double> e : results.entrySet()) out.println(e.getValue() + " " + e.getKey());
+           }
+        if (check != null)
+        {
+            boolean failed = false;
+            try (BufferedReader in = new BufferedReader(new FileReader(check)))
+            {
+                for (String line = in.readLine(); line != null; line = in.readLine())
+                {
+                    int space = line.indexOf(' ');
+                    String name = line.substring(space + 1);
+                    double before = Double.parseDouble(line.substring(0, space));
+                    Double now = results.get(name);
+                    if (now != null && now > before * tolerance)
+                    {
+                        System.out.println(String.format("REGRESSION: %s took %.1f ns/op, was %.1f", name, now, before));
+                        failed = true;
+                    }
+                }
+            }
+            if (failed) System.exit(1);
+        }
+    }
+}
@@ -17,10 +17,60 @@ public class Bohnenspiel
     private int[] board;
     // the stores denote the number of beans in each store
     private int[] stores;
+    // the number of beans in each player's houses, kept up to date by every change to the board
+    private int[] sides;
     // whose turn is it? 
     private int turn;
     // is the game over?
     private boolean gameOver;
+    // the Zobrist key of the position, kept up to date by every change to it
+    private long hash;
+    // snapshots of the state saved by makeMove, so that unmakeMove can restore them; 
+    // allocated by the first makeMove, as most copies of a game never need it
+    private int[] history;
+    // the number of snapshots on the history stack
+    private int ply;
+    
+    // the number of ints in one snapshot: board, stores, sides, turn, gameOver and hash
+    private static final int recordsize = boardsize + 2 * numberofstores + 4;
+    // where turn starts in a snapshot
+    private static final int recordturn = boardsize + 2 * numberofstores;
+    
+    // the Zobrist keys for each number of beans in each house and in each store, 
+    // and for SCHWARZ to move; the seed is fixed so that keys are the same in every run
+    private static final long[][] zobristhouses = new long[boardsize][boardsize * beansperhouse + 1];
+    private static final long[][] zobriststores = new long[numberofstores][boardsize * beansperhouse + 1];
+    private static final long     zobristturn;
+    static
+    {
+        Random r = new Random(0x5EEDL);
+        for (long[] z : zobristhouses) for (int b = 0; b < z.length; b++) z[b] = r.nextLong();
+        for (long[] z : zobriststores) for (int b = 0; b < z.length; b++) z[b] = r.nextLong();
+        zobristturn = r.nextLong();
+    }
+    
+    // how moves sow their beans, for all games; volatile so that a change made by one 
+    // thread, e.g. by Benchmarks, is seen by the moves of every other thread
+    private static volatile SowingStrategy sowing = SowingStrategy.TABLE;
+    // for each house moved from and number of beans: the beans each house gets, 
+    // the beans each side gets, and the house where the last bean lands
+    private static final int[][][] sowincrements = new int[boardsize][boardsize * beansperhouse + 1][boardsize];
+    private static final int[][][] sowsides      = new int[boardsize][boardsize * beansperhouse + 1][numberofstores];
+    private static final int[][]   sowfinal      = new int[boardsize][boardsize * beansperhouse + 1];
+    static
+    {
+        for (int house = 0; house < boardsize; house++)
+            for (int beans = 0; beans <= boardsize * beansperhouse; beans++)
+            {
+                for (int k = 1; k <= beans; k++)
+                {
+                    int next = (house + k) % boardsize;
+                    sowincrements[house][beans][next]++;
+                    sowsides[house][beans][next / numberofhouses]++;
+                }
+                sowfinal[house][beans] = (house + beans) % boardsize;
+            }
+    }
 
     /**
      * Constructs the starting position of a game of Bohnenspiel. 
@@ -30,8 +80,11 @@ public class Bohnenspiel
         board = new int[boardsize];
         for (int h = 0; h < boardsize; h++) board[h]= beansperhouse;
         stores = new int[numberofstores];
+        sides = new int[numberofstores];
+        Arrays.fill(sides, numberofhouses * beansperhouse);
         turn = 0;
         gameOver = false;
+        hash = computeHash();
     }
     
     /**
@@ -59,7 +112,10 @@ public class Bohnenspiel
         }
         // validate the total number of beans
         if (total != boardsize * beansperhouse) throw new IllegalArgumentException("Wrong total number of beans: " + total);
+        sides = new int[numberofstores];
+        for (int k = 0; k < boardsize; k++) sides[k / numberofhouses] += board[k];
         turn = f.ordinal();
+        hash = computeHash();
         gameOver();
     }
     
@@ -79,6 +135,73 @@ public class Bohnenspiel
         return Arrays.copyOf(stores, numberofstores);
     }
     
+    /**
+     * Returns the number of beans in house k, 0 <= k < boardsize.
+     */
+    public int getHouse(int k)
+    {
+        return board[k];
+    }
+    
+    /**
+     * Returns the number of beans in store t.
+     */
+    public int getStore(int t)
+    {
+        return stores[t];
+    }
+    
+    /**
+     * Returns the number of beans in player f's houses.
+     */
+    public int beansOnSide(Farbe f)
+    {
+        return sides[f.ordinal()];
+    }
+    
+    /**
+     * Sets how every game sows the beans of its moves.
+     */
+    public static void setSowing(SowingStrategy s)
+    {
+        sowing = s;
+    }
+    
+    /**
+     * Returns how every game sows the beans of its moves.
+     */
+    public static SowingStrategy getSowing()
+    {
+        return sowing;
+    }
+    
+    /**
+     * Returns the colour whose turn it is.
+     */
+    public Farbe getTurn()
+    {
+        return turn == 0 ? Farbe.WEISSE : Farbe.SCHWARZ;
+    }
+    
+    /**
+     * Returns the Zobrist key of the position.
+     */
+    public long getHash()
+    {
+        return hash;
+    }
+    
+    /**
+     * Returns the Zobrist key of the position, computed from scratch.
+     */
+    private long computeHash()
+    {
+        long h = turn == 0 ? 0 : zobristturn;
+        for (int k = 0; k < boardsize; k++)      h ^= zobristhouses[k][board[k]];
+        for (int k = 0; k < numberofstores; k++) h ^= zobriststores[k][stores[k]];
+        return h;
+    }
+    
     /**
      * Returns the game status.
      */
@@ -87,6 +210,34 @@ public class Bohnenspiel
         return gameOver;
     }
     
+    /**
+     * Returns the legal moves for player turn as a bitmask: 
+     * bit h - 1 is set iff move h is legal. Returns 0 if the game is over. 
+     */
+    public int legalMoves()
+    {
+        if (gameOver) return 0;
+        int moves = 0;
+        for (int k = 0; k < numberofhouses; k++)
+            if (board[turn * numberofhouses + k] > 0) moves |= 1 << k;
+        return moves;
+    }
+    
+    /**
+     * Returns the number of beans that legal move h would capture from the 
+     * house where its last bean lands, or 0 if that house is not captured. 
+     * Further captures from the houses before it are not counted. 
+     */
+    public int captures(int h)
+    {
+        int house = turn * numberofhouses + h - 1;
+        int beans = board[house];
+        int finalhouse = (house + beans) % boardsize;
+        // the house moved from is emptied first, and every house gets one bean per full lap
+        int b = (finalhouse == house ? 0 : board[finalhouse] + 1) + beans / boardsize;
+        return b == 2 || b == 4 || b == 6 ? b : 0;
+    }
+    
     /**
      * Returns a copy of this game.
      */
@@ -106,14 +257,14 @@ public class Bohnenspiel
         else
            for (int t = 0; t < 2 && !gameOver; t++)
            {
-               boolean g = true;
-               for (int k = 0; k < numberofhouses; k++)
-                   if (board[numberofhouses * t + k] > 0) g = false;
-               gameOver = g;
+               gameOver = sides[t] == 0;
                if (gameOver)
+               {
+                  hash ^= zobriststores[1 - t][stores[1 - t]];
                   // move the beans appropriately 
-                  for (int k = 0; k < numberofhouses; k++)
-                      stores[1 - t] += board[numberofhouses * (1 - t) + k];
+                  stores[1 - t] += sides[1 - t];
+                  hash ^= zobriststores[1 - t][stores[1 - t]];
+               }
            }
     }
     
@@ -123,26 +274,110 @@ public class Bohnenspiel
     public void move(int h) throws IllegalArgumentException
     {
         if (gameOver) return;
+        sow(house(h));
+    }
+    
+    /**
+     * Performs move h for player turn, remembering the previous state so that 
+     * unmakeMove can take it back. Nothing is allocated once the history stack 
+     * is as deep as the deepest line played so far. 
+     */
+    public void makeMove(int h) throws IllegalArgumentException
+    {
+        int house = gameOver ? -1 : house(h);
+        if (history == null) history = new int[recordsize * 16];
+        if (ply * recordsize == history.length) history = Arrays.copyOf(history, history.length * 2);
+        int r = ply * recordsize;
+        System.arraycopy(board,  0, history, r, boardsize);
+        System.arraycopy(stores, 0, history, r + boardsize, numberofstores);
+        System.arraycopy(sides,  0, history, r + boardsize + numberofstores, numberofstores);
+        history[r + recordturn]     = turn;
+        history[r + recordturn + 1] = gameOver ? 1 : 0;
+        history[r + recordturn + 2] = (int) (hash >>> 32);
+        history[r + recordturn + 3] = (int) hash;
+        ply++;
+        if (!gameOver) sow(house);
+    }
+    
+    /**
+     * Takes back the last move made by makeMove. 
+     */
+    public void unmakeMove()
+    {
+        if (ply == 0) throw new IllegalStateException("No move to take back");
+        ply--;
+        int r = ply * recordsize;
+        System.arraycopy(history, r,             board,  0, boardsize);
+        System.arraycopy(history, r + boardsize, stores, 0, numberofstores);
+        System.arraycopy(history, r + boardsize + numberofstores, sides, 0, numberofstores);
+        turn     = history[r + recordturn];
+        gameOver = history[r + recordturn + 1] == 1;
+        hash     = (long) history[r + recordturn + 2] << 32 
+                 | history[r + recordturn + 3] & 0xFFFFFFFFL;
+    }
+    
+    /**
+     * Returns the index of the house for move h by player turn. 
+     * Throws an exception if h is not a legal move. 
+     */
+    private int house(int h) throws IllegalArgumentException
+    {
         if (h < 1 || h > numberofhouses) 
            throw new IllegalArgumentException ("Illegal move: " + h  + " is out of range");
         // the index of the house being moved from
         int house = turn * numberofhouses + h - 1;
+        if (board[house] == 0) 
+           throw new IllegalArgumentException ("Illegal move: " + h + " is empty");
+        return house;
+    }
+    
+    /**
+     * Sows the beans from house, makes any captures, and passes the turn. 
+     */
+    private void sow(int house)
+    {
         // the number of beans picked up
         int beans = board[house];
-        if (beans == 0) 
-           throw new IllegalArgumentException ("Illegal move: " + h + " is empty");
+        hash ^= zobristhouses[house][beans] ^ zobristhouses[house][0];
         board[house] = 0;
-        for (int k = 1; k <= beans; k++)
-            board[(house + k) % boardsize] += 1; 
+        sides[turn] -= beans;
+        int finalhouse;
+        if (sowing == SowingStrategy.TABLE)
+        {
+            // every house gets its increment, which is 0 for the houses not reached
+            int[] increments = sowincrements[house][beans];
+            for (int k = 0; k < boardsize; k++)
+            {
+                hash ^= zobristhouses[k][board[k]] ^ zobristhouses[k][board[k] + increments[k]];
+                board[k] += increments[k];
+            }
+            sides[0] += sowsides[house][beans][0];
+            sides[1] += sowsides[house][beans][1];
+            finalhouse = sowfinal[house][beans];
+        }
+        else
+        {
+            for (int k = 1; k <= beans; k++)
+            {
+                int next = (house + k) % boardsize;
+                hash ^= zobristhouses[next][board[next]] ^ zobristhouses[next][board[next] + 1];
+                board[next] += 1; 
+                sides[next / numberofhouses] += 1;
+            }
+            finalhouse = (house + beans) % boardsize;
+        }
         // check for a capture
-        int finalhouse = (house + beans) % boardsize;
         while (board[finalhouse] == 2 || board[finalhouse] == 4 || board[finalhouse] == 6)
         {
+            hash ^= zobriststores[turn][stores[turn]] ^ zobriststores[turn][stores[turn] + board[finalhouse]];
+            hash ^= zobristhouses[finalhouse][board[finalhouse]] ^ zobristhouses[finalhouse][0];
             stores[turn] += board[finalhouse];
+            sides[finalhouse / numberofhouses] -= board[finalhouse];
             board[finalhouse] = 0;
             finalhouse = (finalhouse - 1 + boardsize) % boardsize;
         }
         turn = 1 - turn;
+        hash ^= zobristturn;
         gameOver();
     }
     
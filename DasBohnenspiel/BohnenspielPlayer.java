@@ -2,8 +2,10 @@
  * Implements an intelligent player for Bohnenspiel. 
  */
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
 
-public class BohnenspielPlayer
+public class BohnenspielPlayer implements Player
 {
     // what's my name?
     private final String name;
@@ -11,15 +13,270 @@ public class BohnenspielPlayer
     private final Farbe farbe;
     // used to index the board
     private final int turn;
+    // remembers searched positions, across the moves of a game
+    private TranspositionTable table;
+    
+    //search budget: deepest iteration in plies, wall-clock limit in ms and node limit, 0 meaning no limit
+    private int maxDepth;
+    private long timeLimit;
+    private long nodeLimit;
+    
+    //how many threads search, and whether they must give the same answer every time
+    private int threads = 1;
+    private boolean deterministic;
+    //how the searches order their moves, and which tree search they use
+    private OrderingStrategy ordering = OrderingStrategy.HISTORY;
+    private SearchAlgorithm algorithm = SearchAlgorithm.MINIMAX;
+    //exact values of positions with few beans left, or null
+    private EndgameDatabase endgame;
+    //best moves of early positions, or null
+    private OpeningBook book;
+    //scores the leaves of the search, or null for the store difference alone
+    private Evaluator evaluator;
+    
+    //one search per thread, and the pool running all but the first;
+    //built on the first move after the threads are changed
+    private BohnenspielSearch[] searches;
+    private ExecutorService pool;
+    
+    //nodes visited by the last search, over all threads
+    private long nodes;
+    //score and depth of the last completed iteration of the last search
+    private int score;
+    private int depth;
+    //wall-clock time of the last search in ns, its statistics over all threads, and where they go, or null
+    private long elapsed;
+    private SearchStatistics statistics = new SearchStatistics();
+    private SearchMonitor monitor;
+    
+    //deepest iteration when only a time or node budget is given
+    private static final int MAXDEPTH = BohnenspielSearch.MAXPLY;
+    //size of each helper's own table in a deterministic search
+    private static final int HELPERTABLEBITS = 18;
 
     /**
-     * Constructs a Bohnenspiel player.
+     * Constructs a Bohnenspiel player that searches 4 plies ahead.
      */
     public BohnenspielPlayer(Farbe f)
     {
         name = "22507198";
         farbe = f;
         turn = farbe.ordinal();
+        table = new TranspositionTable();
+        maxDepth = 4;
+    }
+    
+    /**
+     * Constructs a Bohnenspiel player that keeps deepening its search until 
+     * millis milliseconds have passed. 
+     */
+    public BohnenspielPlayer(Farbe f, long millis)
+    {
+        this(f);
+        maxDepth = MAXDEPTH;
+        timeLimit = millis;
+    }
+    
+    /**
+     * Sets the deepest iteration, in plies.
+     */
+    public void setMaxDepth(int d)
+    {
+        if (d < 1 || d > MAXDEPTH) throw new IllegalArgumentException("Bad depth: " + d);
+        maxDepth = d;
+    }
+    
+    /**
+     * Sets the wall-clock budget per move in milliseconds, 0 for none. 
+     */
+    public void setTimeLimit(long millis)
+    {
+        timeLimit = millis;
+    }
+    
+    /**
+     * Sets the node budget per move, 0 for none. 
+     */
+    public void setNodeLimit(long n)
+    {
+        nodeLimit = n;
+    }
+    
+    /**
+     * Sets the number of search threads. With more than one thread the 
+     * search is Lazy SMP: the threads run the same iterative deepening 
+     * over the shared transposition table and the first thread's answer 
+     * is played. A deterministic search instead splits the root moves 
+     * between threads with a private table each, and gives the same answer 
+     * for the same thread count as long as no time limit is set. 
+     */
+    public void setThreads(int n, boolean det)
+    {
+        if (n < 1) throw new IllegalArgumentException("Bad thread count: " + n);
+        if (pool != null) pool.shutdownNow();
+        threads = n;
+        deterministic = det;
+        searches = null;
+        pool = null;
+    }
+    
+    /**
+     * Replaces the transposition table with an empty one of 2^bits slots.
+     */
+    public void setTableSize(int bits)
+    {
+        table = new TranspositionTable(bits, ReplacementPolicy.AGED);
+        searches = null;
+    }
+    
+    /**
+     * Makes this player use table t, which may be shared with other players 
+     * so that what one has searched is known to all of them.
+     */
+    public void setTable(TranspositionTable t)
+    {
+        table = t;
+        searches = null;
+    }
+    
+    /**
+     * Empties the transposition table, forgetting everything searched so far.
+     */
+    public void clearTable()
+    {
+        table.clear();
+    }
+    
+    /**
+     * Sets the endgame database the search probes, or null for none. 
+     * The database can be shared by any number of players.
+     */
+    public void setEndgameDatabase(EndgameDatabase db)
+    {
+        endgame = db;
+        searches = null;
+    }
+    
+    /**
+     * Sets the evaluator of the leaves of the search, or null for the 
+     * store difference alone. The evaluator can be shared by any number of players.
+     */
+    public void setEvaluator(Evaluator e)
+    {
+        evaluator = e;
+        searches = null;
+    }
+    
+    /**
+     * Sets the opening book consulted before searching, or null for none. 
+     * The book can be shared by any number of players.
+     */
+    public void setOpeningBook(OpeningBook b)
+    {
+        book = b;
+    }
+    
+    /**
+     * Sets the move-ordering heuristics of the search.
+     */
+    public void setOrdering(OrderingStrategy s)
+    {
+        ordering = s;
+        searches = null;
+    }
+    
+    /**
+     * Sets the tree search.
+     */
+    public void setAlgorithm(SearchAlgorithm a)
+    {
+        algorithm = a;
+        searches = null;
+    }
+    
+    /**
+     * Returns a copy of the statistics of the last call of chooseMove, over all threads. 
+     * They are only counted if SearchStatistics.ENABLED.
+     */
+    public SearchStatistics getStatistics()
+    {
+        return statistics.copy();
+    }
+    
+    /**
+     * Sets the monitor that the statistics of every search are added to, or null for none. 
+     * The monitor can be shared by any number of players.
+     */
+    public void setMonitor(SearchMonitor m)
+    {
+        monitor = m;
+    }
+    
+    /**
+     * Returns the threads and table memory this player uses.
+     */
+    @Override
+    public EngineResources getResources()
+    {
+        //16 bytes a slot, and a deterministic search gives every helper a table of its own
+        long slots = table.size() + (deterministic ? (threads - 1L) << HELPERTABLEBITS : 0);
+        return new EngineResources(threads, slots * 16);
+    }
+    
+    /**
+     * Stops the helper threads; the next move with more than one thread starts them again.
+     */
+    @Override
+    public void close()
+    {
+        if (pool != null) pool.shutdownNow();
+        searches = null;
+        pool = null;
+    }
+    
+    /**
+     * Returns the number of nodes visited by the last call of chooseMove.
+     */
+    public long getNodes()
+    {
+        return nodes;
+    }
+    
+    /**
+     * Returns the score of the move chosen by the last call of chooseMove, 
+     * from this player's point of view, or 0 if it came from the book.
+     */
+    public int getScore()
+    {
+        return score;
+    }
+    
+    /**
+     * Returns the depth of the last completed iteration of the last call of 
+     * chooseMove, or 0 if the move came from the book.
+     */
+    public int getDepth()
+    {
+        return depth;
+    }
+    
+    /**
+     * Returns the principal variation starting with move in game, 
+     * as far as the transposition table remembers it. 
+     */
+    public int[] getPrincipalVariation(Bohnenspiel game, int move)
+    {
+        Bohnenspiel g = game.copyGame(getFarbe());
+        int[] pv = new int[MAXDEPTH];
+        int n = 0;
+        for (int h = move; h != 0 && n < pv.length && (g.legalMoves() & 1 << (h - 1)) != 0; n++)
+        {
+            pv[n] = h;
+            g.makeMove(h);
+            long entry = table.probe(g.getHash());
+            h = entry == 0 ? 0 : TranspositionTable.move(entry);
+        }
+        return Arrays.copyOf(pv, n);
     }
     
     /**
@@ -46,102 +303,206 @@ public class BohnenspielPlayer
      */
     public int chooseMove(Bohnenspiel game)
     {
-        // COMPLETE THIS 
-        // Placeholder simply plays a random move
-    	int move = 0;
-    	int value = Integer.MIN_VALUE;
-    	int depth = 3;
+    	//a position in the book needs no search
+    	if(book != null)	{
+    		int move = book.probe(game);
+    		if(move != 0 && (game.legalMoves() & 1 << (move-1)) != 0)	{
+    			nodes = 0;
+    			score = 0;
+    			depth = 0;
+    			statistics = new SearchStatistics();
+    			return move;
+    		}
+    	}
+    	if(searches == null)	{
+    		searches = new BohnenspielSearch[threads];
+    		for(int k = 0; k < threads; k++)	{
+    			//Lazy SMP shares one table, a deterministic split gives every helper its own
+    			TranspositionTable t = k == 0 || !deterministic ? table : new TranspositionTable(HELPERTABLEBITS, ReplacementPolicy.AGED);
+    			searches[k] = new BohnenspielSearch(getFarbe(), t, ordering);
+    			searches[k].setEndgameDatabase(endgame);
+    			searches[k].setEvaluator(evaluator);
+    			searches[k].setAlgorithm(algorithm);
+    		}
+    		if(threads > 1 && pool == null)	{
+    			pool = Executors.newFixedThreadPool(threads - 1, r -> {
+    				Thread t = new Thread(r, getName() + " search");
+    				t.setDaemon(true);
+    				return t;
+    			});
+    		}
+    	}
+    	//age each table once per move, however many searches share it
+    	for(int k = 0; k < searches.length; k++)	{
+    		TranspositionTable t = searches[k].getTable();
+    		if(k == 0 || t != searches[0].getTable())	{
+    			t.newSearch();
+    		}
+    	}
     	
-    	for(int i = 0; i < Bohnenspiel.numberofhouses; i++)	{
-    		Bohnenspiel next = game.copyGame(getFarbe());
-    		try	{
-    			next.move(i+1);;
-    		} catch(Exception e)	{
-    			continue;
+    	long start = System.nanoTime();
+    	int move;
+    	if(threads == 1)	{
+    		move = iterate(searches[0], game, 1, new AtomicBoolean());
+    	}
+    	else if(deterministic)	{
+    		move = splitRoot(game);
+    	}
+    	else	{
+    		move = lazySMP(game);
+    	}
+    	nodes = 0;
+    	for(BohnenspielSearch search : searches)	{
+    		nodes += search.getNodes();
+    	}
+    	elapsed = System.nanoTime() - start;
+    	if(SearchStatistics.ENABLED)	{
+    		//combined once, here, so that reading them changes nothing
+    		SearchStatistics s = new SearchStatistics();
+    		for(BohnenspielSearch search : searches)	{
+    			s.add(search.getStatistics());
     		}
-    		//depth = 3, depth = 4, depth = 5
-    		int bestScore = minimax(next, depth, Integer.MIN_VALUE, Integer.MAX_VALUE, Farbe.flip(getFarbe()));
-    		if(bestScore > value)	{
-    			move = i;
-    			value = bestScore;
+    		s.search(elapsed);
+    		statistics = s;
+    		if(monitor != null)	{
+    			monitor.record(s);
     		}
     	}
-    	return move + 1; //should be 1-6 not 0-5
-    	/*
-        while (true)
-        {
-            int h = (int) (Math.random() * Bohnenspiel.numberofhouses);
-            if (game.getBoard()[h + turn * Bohnenspiel.numberofhouses] > 0) return h + 1;
-        }*/
+    	return move;
     }
     
-    //Alpha Beta MiniMax
-    private int minimax(Bohnenspiel game, int depth, int alpha, int beta, Farbe player)	{
+    //Iterative deepening on a copy of game from startDepth to maxDepth.
+    //Each iteration starts from the best move of the one before, and the
+    //transposition table supplies the rest of its principal variation.
+    //Returns the best move of the last completed iteration
+    private int iterate(BohnenspielSearch search, Bohnenspiel game, int startDepth, AtomicBoolean stop)	{
+    	//one copy for the whole search, moves are made and taken back in place
+    	Bohnenspiel next = game.copyGame(getFarbe());
+    	search.start(next, stop);
     	
-    	if(depth == 0 || game.isOver())	{
-    		return evaluate(game);
+    	int move = Integer.numberOfTrailingZeros(next.legalMoves()) + 1;
+    	long start = System.nanoTime();
+    	for(int depth = startDepth; depth <= maxDepth; depth++)	{
+    		long before = search.getNodes();
+    		long time = System.nanoTime();
+    		int best = search.searchRoot(depth, move);
+    		if(search.isAborted())	{
+    			break;
+    		}
+    		if(SearchStatistics.ENABLED)	{
+    			search.getStatistics().iteration(depth, search.getNodes() - before, System.nanoTime() - time);
+    		}
+    		move = best;
+    		if(search == searches[0])	{
+    			score = search.getScore();
+    			this.depth = depth;
+    		}
+    		//the first iteration always completes, the budget applies from the second on
+    		if(depth == startDepth)	{
+    			search.setBudget(nodeLimit > 0 ? nodeLimit : Long.MAX_VALUE, 
+    			                 timeLimit > 0 ? start + timeLimit * 1000000 : Long.MAX_VALUE);
+    		}
+    	}
+    	return move;
+    }
+    
+    //Lazy SMP: the helpers deepen over the shared table, half of them a ply ahead,
+    //until the first search finishes and stops them
+    private int lazySMP(Bohnenspiel game)	{
+    	AtomicBoolean stop = new AtomicBoolean();
+    	List<Future<Integer>> helpers = new ArrayList<>();
+    	for(int k = 1; k < threads; k++)	{
+    		BohnenspielSearch helper = searches[k];
+    		int startDepth = 1 + k % 2;
+    		helpers.add(pool.submit(() -> iterate(helper, game, startDepth, stop)));
+    	}
+    	int move = iterate(searches[0], game, 1, stop);
+    	stop.set(true);
+    	await(helpers);
+    	return move;
+    }
+    
+    //Deterministic root split: at each depth the root moves are dealt out to the threads
+    //in house order and searched with a full window. Returns the first move with the highest
+    //score of the last depth that every thread completed
+    private int splitRoot(Bohnenspiel game)	{
+    	AtomicBoolean stop = new AtomicBoolean();
+    	int[] rootMoves = new int[Integer.bitCount(game.legalMoves())];
+    	int[] scores = new int[rootMoves.length];
+    	for(int moves = game.legalMoves(), m = 0; moves != 0; moves &= moves - 1)	{
+    		rootMoves[m++] = Integer.numberOfTrailingZeros(moves) + 1;
+    	}
+    	for(BohnenspielSearch search : searches)	{
+    		search.start(game.copyGame(getFarbe()), stop);
     	}
     	
-    	int value;
-    	
-    	if(player == getFarbe())	{
-    		value = Integer.MIN_VALUE;
-    		for(int i =0; i < Bohnenspiel.numberofhouses; i++)	{
-    			Bohnenspiel next = game.copyGame(player);
-    			try	{
-    				next.move(i+1);;
-    			} catch (Exception e)	{
-    				continue;
-    			}
-    			value = Math.max(value, minimax(next, depth-1, alpha, beta, Farbe.flip(player)));
-    			alpha = Math.max(alpha, value);
-    			if(beta <= alpha)	{
-    				break;
+    	int move = rootMoves[0];
+    	long start = System.nanoTime();
+    	for(int depth = 1; depth <= maxDepth; depth++)	{
+    		long before = 0;
+    		for(BohnenspielSearch search : searches)	{
+    			before += search.getNodes();
+    		}
+    		long time = System.nanoTime();
+    		List<Future<Integer>> parts = new ArrayList<>();
+    		for(int k = 1; k < threads; k++)	{
+    			int part = k;
+    			int d = depth;
+    			parts.add(pool.submit(() -> searchPart(part, d, rootMoves, scores)));
+    		}
+    		searchPart(0, depth, rootMoves, scores);
+    		await(parts);
+    		boolean completed = true;
+    		for(BohnenspielSearch search : searches)	{
+    			completed &= !search.isAborted();
+    		}
+    		if(!completed)	{
+    			break;
+    		}
+    		if(SearchStatistics.ENABLED)	{
+    			long after = 0;
+    			for(BohnenspielSearch search : searches)	{
+    				after += search.getNodes();
     			}
+    			searches[0].getStatistics().iteration(depth, after - before, System.nanoTime() - time);
     		}
-    		return value;
-    	}
-    	else	{
-    		value = Integer.MAX_VALUE;
-    		for(int i = 0; i < Bohnenspiel.numberofhouses; i++)	{
-    			Bohnenspiel next = game.copyGame(player);
-    			try	{
-    				next.move(i+1);
-    			} catch(Exception e)	{
-    				continue;
+    		int best = 0;
+    		for(int m = 1; m < rootMoves.length; m++)	{
+    			if(scores[m] > scores[best])	{
+    				best = m;
     			}
-    			value = Math.min(value, minimax(next, depth-1, alpha, beta, Farbe.flip(player)));
-    			beta = Math.min(beta, value);
-    			if(beta <= alpha)	{
-    				break;
+    		}
+    		move = rootMoves[best];
+    		score = scores[best];
+    		this.depth = depth;
+    		//the first depth always completes, the budget applies from the second on;
+    		//the node budget is shared out evenly so that it does not depend on timing
+    		if(depth == 1)	{
+    			for(BohnenspielSearch search : searches)	{
+    				search.setBudget(nodeLimit > 0 ? nodeLimit / threads : Long.MAX_VALUE, 
+    				                 timeLimit > 0 ? start + timeLimit * 1000000 : Long.MAX_VALUE);
     			}
     		}
-    		return value;
     	}
+    	return move;
     }
     
-    //Simple Evaluate that takes into account player win conditions and difference between player and opponent
-    private int evaluate(Bohnenspiel game)	{
-    	int[] stores = game.getStores();
-    	int playerStore; int oppStore;
-    	
-    	if(Farbe.WEISSE == getFarbe())	{
-    		playerStore = stores[0];
-    		oppStore = stores[1];
+    //Searches root moves part, part + threads, ... to depth with search number part
+    private int searchPart(int part, int depth, int[] rootMoves, int[] scores)	{
+    	for(int m = part; m < rootMoves.length && !searches[part].isAborted(); m += threads)	{
+    		scores[m] = searches[part].searchMove(rootMoves[m], depth);
     	}
-    	else	{
-    		playerStore = stores[1];
-    		oppStore = stores[0];
-    	}
-    	
-    	if(playerStore > 36)	{
-    		return Integer.MAX_VALUE;
-    	}
-    	else if(oppStore > 36)	{
-    		return Integer.MIN_VALUE;
-    	}
-    	else	{
-    		return playerStore - oppStore;
+    	return part;
+    }
+    
+    //Waits for all of tasks to finish
+    private static void await(List<Future<Integer>> tasks)	{
+    	for(Future<Integer> task : tasks)	{
+    		try	{
+    			task.get();
+    		} catch(InterruptedException | ExecutionException e)	{
+    			throw new IllegalStateException("Search thread failed", e);
+    		}
     	}
     }
-}
\ No newline at end of file
+}
@@ -4,7 +4,7 @@
  */
 import java.util.*;
 
-public class BohnenspielPlayerBuiltin
+public class BohnenspielPlayerBuiltin implements Player
 {
     // what's my name?
     private final String name;
@@ -0,0 +1,302 @@
+/**
+ * Implements a Monte Carlo Tree Search player for Bohnenspiel, using UCT 
+ * with random playouts. The tree lives in preallocated primitive arrays, 
+ * one slot per node, and is kept between moves: if the new position is a 
+ * grandchild of the last root its subtree carries on, otherwise the tree 
+ * starts again. Positions are PackedBohnenspiels, so playouts allocate nothing. 
+ */
+public class BohnenspielPlayerMCTS implements Player
+{
+    // what's my name?
+    private final String name;
+    // what colour do I have?
+    private final Farbe farbe;
+    
+    // search budget: playouts per move and wall-clock limit in ms, 0 meaning no limit
+    private long iterations;
+    private long timeLimit;
+    // the exploration constant of UCT
+    private double exploration = Math.sqrt(2);
+    
+    // the node pool: the position at each node, its parent, the move that led to it, 
+    // where its children start and how many there are (-1 until it is expanded), 
+    // how often it was visited and the total reward for the player who moved into it
+    private final long[]   weisse;
+    private final long[]   schwarz;
+    private final int[]    parent;
+    private final byte[]   move;
+    private final int[]    firstChild;
+    private final byte[]   children;
+    private final int[]    visits;
+    private final double[] reward;
+    // the number of nodes in use, and the root
+    private int used;
+    private int root = -1;
+    
+    // scratch space for a descent and a playout
+    private final int[] path = new int[maxpath];
+    private final PackedBohnenspiel scratch = new PackedBohnenspiel();
+    // the state of the random number generator
+    private long seed = System.nanoTime() | 1;
+    // playouts in the last call of chooseMove
+    private long playouts;
+    
+    // the deepest descent through the tree, and the longest playout before it is scored as it stands
+    private static final int maxpath    = 1024;
+    private static final int maxplayout = 1000;
+
+    /**
+     * Constructs an MCTS player with room for 2^20 nodes, playing 20000 playouts per move.
+     */
+    public BohnenspielPlayerMCTS(Farbe f)
+    {
+        this(f, 20, 20000, 0);
+    }
+    
+    /**
+     * Constructs an MCTS player with room for 2^bits nodes, playing n playouts or 
+     * for millis milliseconds per move, whichever comes first; 0 means no limit, 
+     * but there must be some limit.
+     */
+    public BohnenspielPlayerMCTS(Farbe f, int bits, long n, long millis)
+    {
+        if (bits < 4 || bits > 28) throw new IllegalArgumentException("Bad pool size: 2^" + bits);
+        if (n <= 0 && millis <= 0) throw new IllegalArgumentException("MCTS needs an iteration or time budget");
+        name = "MCTS";
+        farbe = f;
+        iterations = n;
+        timeLimit = millis;
+        int size = 1 << bits;
+        weisse     = new long[size];
+        schwarz    = new long[size];
+        parent     = new int[size];
+        move       = new byte[size];
+        firstChild = new int[size];
+        children   = new byte[size];
+        visits     = new int[size];
+        reward     = new double[size];
+    }
+    
+    /**
+     * Returns the player's name.
+     */
+    public String getName()
+    {
+        return name;
+    }
+    
+    /**
+     * Returns the player's colour.
+     */
+    public Farbe getFarbe()
+    {
+        return farbe;
+    }
+    
+    /**
+     * Returns the threads and table memory this player uses.
+     */
+    @Override
+    public EngineResources getResources()
+    {
+        // two longs, three ints, two bytes and a double per node
+        return new EngineResources(1, weisse.length * 38L);
+    }
+    
+    /**
+     * Sets the exploration constant of UCT.
+     */
+    public void setExploration(double c)
+    {
+        exploration = c;
+    }
+    
+    /**
+     * Seeds the random number generator of the playouts.
+     */
+    public void setSeed(long s)
+    {
+        seed = s | 1;
+    }
+    
+    /**
+     * Adds the visits of each move at the root after the last call of chooseMove 
+     * to counts, indexed by house from 0.
+     */
+    public void addRootVisits(long[] counts)
+    {
+        for (int c = firstChild[root]; c < firstChild[root] + children[root]; c++)
+            counts[move[c] - 1] += visits[c];
+    }
+    
+    /**
+     * Returns the number of playouts in the last call of chooseMove.
+     */
+    public long getPlayouts()
+    {
+        return playouts;
+    }
+    
+    /**
+     * Returns a legal move in game, i.e. a number h in [1, 6]. 
+     */
+    public int chooseMove(Bohnenspiel game)
+    {
+        PackedBohnenspiel position = new PackedBohnenspiel(game);
+        reuse(position.getWeisse(), position.getSchwarz());
+        long deadline = timeLimit > 0 ? System.nanoTime() + timeLimit * 1000000 : Long.MAX_VALUE;
+        long cap = iterations > 0 ? iterations : Long.MAX_VALUE;
+        for (playouts = 0; playouts < cap; playouts++)
+        {
+            if ((playouts & 255) == 0 && System.nanoTime() > deadline) break;
+            iterate();
+        }
+        // play the most visited move
+        int best = -1;
+        for (int c = firstChild[root]; c < firstChild[root] + children[root]; c++)
+            if (best < 0 || visits[c] > visits[best]) best = c;
+        return best < 0 ? Integer.numberOfTrailingZeros(game.legalMoves()) + 1 : move[best];
+    }
+    
+    /**
+     * Makes the position with words w and s the root, keeping its subtree 
+     * if it is the root or a grandchild of the root.
+     */
+    private void reuse(long w, long s)
+    {
+        int found = -1;
+        if (root >= 0 && used < weisse.length / 2)
+        {
+            if (weisse[root] == w && schwarz[root] == s) found = root;
+            for (int c = firstChild[root]; found < 0 && c < firstChild[root] + children[root]; c++)
+                for (int g = firstChild[c]; found < 0 && g < firstChild[c] + children[c]; g++)
+                    if (weisse[g] == w && schwarz[g] == s) found = g;
+        }
+        if (found < 0)
+        {
+            used = 0;
+            found = newNode(w, s, -1, 0);
+        }
+        root = found;
+    }
+    
+    /**
+     * Returns a new node for the position with words w and s, reached from p by move m.
+     */
+    private int newNode(long w, long s, int p, int m)
+    {
+        int n = used++;
+        weisse[n]     = w;
+        schwarz[n]    = s;
+        parent[n]     = p;
+        move[n]       = (byte) m;
+        firstChild[n] = 0;
+        children[n]   = -1;
+        visits[n]     = 0;
+        reward[n]     = 0;
+        return n;
+    }
+    
+    /**
+     * Runs one iteration: select a leaf by UCT, expand it, play out from it, 
+     * and back up the result.
+     */
+    private void iterate()
+    {
+        int depth = 0;
+        int n = root;
+        path[depth++] = n;
+        // descend while the node is expanded
+        while (children[n] > 0 && depth < maxpath)
+        {
+            n = select(n);
+            path[depth++] = n;
+        }
+        scratch.set(weisse[n], schwarz[n]);
+        // expand a node the second time it is reached, if there is room
+        if (!scratch.isOver() && children[n] < 0 && visits[n] > 0 && used + Bohnenspiel.numberofhouses <= weisse.length && depth < maxpath)
+        {
+            expand(n);
+            n = select(n);
+            path[depth++] = n;
+            scratch.set(weisse[n], schwarz[n]);
+        }
+        double result = playout(scratch);
+        // back up: each node scores the result for the player who moved into it
+        for (int k = 0; k < depth; k++)
+        {
+            int v = path[k];
+            visits[v]++;
+            boolean byWeisse = (weisse[v] & 1L << 56) != 0;
+            reward[v] += byWeisse ? result : 1 - result;
+        }
+    }
+    
+    /**
+     * Adds the children of node n to the pool.
+     */
+    private void expand(int n)
+    {
+        PackedBohnenspiel p = scratch;
+        firstChild[n] = used;
+        int count = 0;
+        for (int moves = p.legalMoves(); moves != 0; moves &= moves - 1)
+        {
+            int h = Integer.numberOfTrailingZeros(moves) + 1;
+            p.set(weisse[n], schwarz[n]);
+            p.move(h);
+            newNode(p.getWeisse(), p.getSchwarz(), n, h);
+            count++;
+        }
+        children[n] = (byte) count;
+    }
+    
+    /**
+     * Returns the child of n with the highest UCT value; unvisited children come first.
+     */
+    private int select(int n)
+    {
+        double logn = Math.log(Math.max(1, visits[n]));
+        int best = -1;
+        double bestValue = Double.NEGATIVE_INFINITY;
+        for (int c = firstChild[n]; c < firstChild[n] + children[n]; c++)
+        {
+            if (visits[c] == 0) return c;
+            double u = reward[c] / visits[c] + exploration * Math.sqrt(logn / visits[c]);
+            if (u > bestValue)
+            {
+                bestValue = u;
+                best = c;
+            }
+        }
+        return best;
+    }
+    
+    /**
+     * Plays random moves from p to the end of the game, and returns 1 if WEISSE wins, 
+     * 0 if SCHWARZ wins and 1/2 for a draw.
+     */
+    private double playout(PackedBohnenspiel p)
+    {
+        for (int ply = 0; ply < maxplayout && !p.isOver(); ply++)
+        {
+            int moves = p.legalMoves();
+            // pick the r-th legal move
+            for (int r = random(Integer.bitCount(moves)); r > 0; r--) moves &= moves - 1;
+            p.move(Integer.numberOfTrailingZeros(moves) + 1);
+        }
+        int d = p.getStore(0) - p.getStore(1);
+        return d > 0 ? 1 : d < 0 ? 0 : 0.5;
+    }
+    
+    /**
+     * Returns a random number in [0, n), from an xorshift generator.
+     */
+    private int random(int n)
+    {
+        seed ^= seed << 13;
+        seed ^= seed >>> 7;
+        seed ^= seed << 17;
+        return (int) ((seed >>> 33) % n);
+    }
+}
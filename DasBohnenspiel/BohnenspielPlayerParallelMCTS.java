@@ -0,0 +1,398 @@
+/**
+ * Implements a multi-threaded Monte Carlo Tree Search player for Bohnenspiel. 
+ * 
+ * In tree-parallel mode all threads grow one shared tree. Visits and rewards 
+ * are atomic counters, a node is expanded by whichever thread claims it first, 
+ * and a thread descending through a node counts a visit there before its 
+ * playout finishes. That virtual loss steers the other threads elsewhere. 
+ * 
+ * In root-parallel mode each thread grows its own BohnenspielPlayerMCTS tree 
+ * from the same position with its own random numbers, and the visits of the 
+ * root moves are added up at the end. 
+ * 
+ * java BohnenspielPlayerParallelMCTS   reports playouts/sec for 1, 2, 4, ... threads
+ */
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+public class BohnenspielPlayerParallelMCTS implements Player
+{
+    // what's my name?
+    private final String name;
+    // what colour do I have?
+    private final Farbe farbe;
+    // how many threads search, and do they share a tree?
+    private final int threads;
+    private final boolean rootParallel;
+    // wall-clock budget per move in ms
+    private final long timeLimit;
+    // visits added by a thread passing through a node, before its result is known
+    private int virtualLoss = 1;
+    // the exploration constant of UCT
+    private double exploration = Math.sqrt(2);
+    // runs every thread but the calling one
+    private final ExecutorService pool;
+    
+    // the shared tree: as in BohnenspielPlayerMCTS, except that children is -1 until 
+    // a thread claims the node for expansion, -2 while it expands it, and then the count, 
+    // or -3 for a leaf that can never be expanded as the tree is full; rewards are in half points so that they can be added atomically
+    private final long[]             weisse;
+    private final long[]             schwarz;
+    private final byte[]             move;
+    private final int[]              firstChild;
+    private final AtomicIntegerArray children;
+    private final AtomicIntegerArray visits;
+    private final AtomicLongArray    reward;
+    private final AtomicInteger      used = new AtomicInteger();
+    
+    // one tree per thread in root-parallel mode
+    private final BohnenspielPlayerMCTS[] trees;
+    
+    // playouts in the last call of chooseMove, over all threads
+    private long playouts;
+    
+    // the deepest descent through the tree, and the longest playout before it is scored as it stands
+    private static final int maxpath    = 1024;
+    private static final int maxplayout = 1000;
+    private static final int root       = 0;
+    private static final int expanding  = -2;
+    private static final int full       = -3;
+
+    /**
+     * Constructs a player of colour f searching for millis milliseconds per move on 
+     * n threads, with one shared tree of 2^bits nodes or, if rootParallel, 
+     * one tree of that size per thread.
+     */
+    public BohnenspielPlayerParallelMCTS(Farbe f, int n, boolean rp, int bits, long millis)
+    {
+        if (n < 1) throw new IllegalArgumentException("Bad thread count: " + n);
+        if (millis <= 0) throw new IllegalArgumentException("Bad time limit: " + millis);
+        name = "MCTS x" + n + (rp ? " root" : " tree");
+        farbe = f;
+        threads = n;
+        rootParallel = rp;
+        timeLimit = millis;
+        int size = rp ? 0 : 1 << bits;
+        weisse     = new long[size];
+        schwarz    = new long[size];
+        move       = new byte[size];
+        firstChild = new int[size];
+        children   = new AtomicIntegerArray(size);
+        visits     = new AtomicIntegerArray(size);
+        reward     = new AtomicLongArray(size);
+        trees = new BohnenspielPlayerMCTS[rp ? n : 0];
+        for (int k = 0; k < trees.length; k++)
+        {
+            trees[k] = new BohnenspielPlayerMCTS(f, bits, 0, millis);
+            trees[k].setSeed(System.nanoTime() + 0x9E3779B97F4A7C15L * (k + 1));
+        }
+        pool = n == 1 ? null : Executors.newFixedThreadPool(n - 1, r -> 
+        {
+            Thread t = new Thread(r, "MCTS worker");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+    
+    /**
+     * Returns the player's name.
+     */
+    public String getName()
+    {
+        return name;
+    }
+    
+    /**
+     * Returns the player's colour.
+     */
+    public Farbe getFarbe()
+    {
+        return farbe;
+    }
+    
+    /**
+     * Returns the threads and table memory this player uses.
+     */
+    @Override
+    public EngineResources getResources()
+    {
+        long bytes = weisse.length * 38L;
+        for (BohnenspielPlayerMCTS tree : trees) bytes += tree.getResources().getTableBytes();
+        return new EngineResources(threads, bytes);
+    }
+    
+    /**
+     * Stops the worker threads.
+     */
+    @Override
+    public void close()
+    {
+        if (pool != null) pool.shutdownNow();
+    }
+    
+    /**
+     * Sets the number of visits a thread adds to each node on its way down.
+     */
+    public void setVirtualLoss(int vl)
+    {
+        if (vl < 1) throw new IllegalArgumentException("Bad virtual loss: " + vl);
+        virtualLoss = vl;
+    }
+    
+    /**
+     * Returns the number of playouts in the last call of chooseMove, over all threads.
+     */
+    public long getPlayouts()
+    {
+        return playouts;
+    }
+    
+    /**
+     * Returns a legal move in game, i.e. a number h in [1, 6]. 
+     */
+    public int chooseMove(Bohnenspiel game)
+    {
+        long[] counts = new long[Bohnenspiel.numberofhouses];
+        playouts = 0;
+        if (rootParallel)
+        {
+            List<Future<?>> tasks = new ArrayList<>();
+            for (int k = 1; k < threads; k++)
+            {
+                BohnenspielPlayerMCTS tree = trees[k];
+                tasks.add(pool.submit(() -> tree.chooseMove(game)));
+            }
+            trees[0].chooseMove(game);
+            await(tasks);
+            for (BohnenspielPlayerMCTS tree : trees)
+            {
+                tree.addRootVisits(counts);
+                playouts += tree.getPlayouts();
+            }
+        }
+        else
+        {
+            PackedBohnenspiel position = new PackedBohnenspiel(game);
+            used.set(0);
+            newNode(position.getWeisse(), position.getSchwarz(), 0);
+            long deadline = System.nanoTime() + timeLimit * 1000000;
+            List<Future<?>> tasks = new ArrayList<>();
+            Worker[] workers = new Worker[threads];
+            for (int k = 0; k < threads; k++) workers[k] = new Worker(System.nanoTime() + 0x9E3779B97F4A7C15L * (k + 1), deadline);
+            for (int k = 1; k < threads; k++) tasks.add(pool.submit(workers[k]));
+            workers[0].run();
+            await(tasks);
+            int n = children.get(root);
+            for (int c = firstChild[root]; c < firstChild[root] + n; c++) counts[move[c] - 1] += visits.get(c);
+            for (Worker w : workers) playouts += w.playouts;
+        }
+        // play the most visited move
+        int best = -1;
+        for (int h = 0; h < counts.length; h++)
+            if (counts[h] > 0 && (best < 0 || counts[h] > counts[best])) best = h;
+        return best < 0 ? Integer.numberOfTrailingZeros(game.legalMoves()) + 1 : best + 1;
+    }
+    
+    /**
+     * Waits for all of tasks to finish.
+     */
+    private static void await(List<Future<?>> tasks)
+    {
+        try 
+        {
+            for (Future<?> task : tasks) task.get();
+        }
+        catch (InterruptedException | ExecutionException e) 
+        {
+            throw new IllegalStateException("MCTS thread failed", e);
+        }
+    }
+    
+    /**
+     * Initialises node n for the position with words w and s, reached by move m.
+     */
+    private void newNode(long w, long s, int m)
+    {
+        int n = used.getAndIncrement();
+        weisse[n]     = w;
+        schwarz[n]    = s;
+        move[n]       = (byte) m;
+        firstChild[n] = 0;
+        visits.set(n, 0);
+        reward.set(n, 0);
+        children.set(n, -1);
+    }
+    
+    /**
+     * One thread of a tree-parallel search.
+     */
+    private class Worker implements Runnable
+    {
+        // the nodes of the current descent
+        private final int[] path = new int[maxpath];
+        private final PackedBohnenspiel scratch = new PackedBohnenspiel();
+        private final long deadline;
+        private long seed;
+        private long playouts;
+        
+        Worker(long s, long d)
+        {
+            seed = s | 1;
+            deadline = d;
+        }
+        
+        public void run()
+        {
+            for (; (playouts & 255) != 0 || System.nanoTime() < deadline; playouts++) iterate();
+        }
+        
+        /**
+         * Runs one iteration on the shared tree.
+         */
+        private void iterate()
+        {
+            int depth = 0;
+            int n = root;
+            visits.addAndGet(n, virtualLoss);
+            path[depth++] = n;
+            while (depth < maxpath)
+            {
+                int count = children.get(n);
+                if (count < 0)
+                {
+                    // a leaf: expand it the second time it is reached, if nobody else is
+                    scratch.set(weisse[n], schwarz[n]);
+                    if (scratch.isOver() || visits.get(n) <= virtualLoss || !expand(n)) break;
+                    count = children.get(n);
+                }
+                n = select(n, count);
+                visits.addAndGet(n, virtualLoss);
+                path[depth++] = n;
+            }
+            scratch.set(weisse[n], schwarz[n]);
+            int result = playout();
+            // back up in half points; each node scores the result for the player who moved into it
+            for (int k = 0; k < depth; k++)
+            {
+                int v = path[k];
+                if (virtualLoss != 1) visits.addAndGet(v, 1 - virtualLoss);
+                boolean byWeisse = (weisse[v] & 1L << 56) != 0;
+                reward.addAndGet(v, byWeisse ? result : 2 - result);
+            }
+        }
+        
+        /**
+         * Expands n if this thread is the first to claim it and there is room, 
+         * and returns true iff it did.
+         */
+        private boolean expand(int n)
+        {
+            if (!children.compareAndSet(n, -1, expanding)) return false;
+            scratch.set(weisse[n], schwarz[n]);
+            int moves = scratch.legalMoves();
+            int count = Integer.bitCount(moves);
+            // claim room for the children only if there is enough, so that used never passes the length
+            int first;
+            do
+            {
+                first = used.get();
+                if (first + count > weisse.length)
+                {
+                    // out of room: leave it a leaf for good
+                    children.set(n, full);
+                    return false;
+                }
+            }
+            while (!used.compareAndSet(first, first + count));
+            for (int k = 0; moves != 0; moves &= moves - 1, k++)
+            {
+                int h = Integer.numberOfTrailingZeros(moves) + 1;
+                scratch.set(weisse[n], schwarz[n]);
+                scratch.move(h);
+                int c = first + k;
+                weisse[c]     = scratch.getWeisse();
+                schwarz[c]    = scratch.getSchwarz();
+                move[c]       = (byte) h;
+                visits.set(c, 0);
+                reward.set(c, 0);
+                children.set(c, -1);
+            }
+            firstChild[n] = first;
+            // publishing the count makes the children visible to the other threads
+            children.set(n, count);
+            return true;
+        }
+        
+        /**
+         * Returns the child of n with the highest UCT value.
+         */
+        private int select(int n, int count)
+        {
+            double logn = Math.log(Math.max(1, visits.get(n)));
+            int best = firstChild[n];
+            double bestValue = Double.NEGATIVE_INFINITY;
+            for (int c = firstChild[n]; c < firstChild[n] + count; c++)
+            {
+                int v = visits.get(c);
+                if (v == 0) return c;
+                double u = reward.get(c) / (2.0 * v) + exploration * Math.sqrt(logn / v);
+                if (u > bestValue)
+                {
+                    bestValue = u;
+                    best = c;
+                }
+            }
+            return best;
+        }
+        
+        /**
+         * Plays random moves from scratch to the end of the game, and returns 2 if WEISSE 
+         * wins, 0 if SCHWARZ wins and 1 for a draw.
+         */
+        private int playout()
+        {
+            PackedBohnenspiel p = scratch;
+            for (int ply = 0; ply < maxplayout && !p.isOver(); ply++)
+            {
+                int moves = p.legalMoves();
+                for (int r = random(Integer.bitCount(moves)); r > 0; r--) moves &= moves - 1;
+                p.move(Integer.numberOfTrailingZeros(moves) + 1);
+            }
+            return Integer.signum(p.getStore(0) - p.getStore(1)) + 1;
+        }
+        
+        /**
+         * Returns a random number in [0, n), from an xorshift generator.
+         */
+        private int random(int n)
+        {
+            seed ^= seed << 13;
+            seed ^= seed >>> 7;
+            seed ^= seed << 17;
+            return (int) ((seed >>> 33) % n);
+        }
+    }
+    
+    /**
+     * Reports playouts/sec from the start position for 1, 2, 4, ... threads, 
+     * up to twice the number of processors, in both modes.
+     */
+    public static void main(String[] args)
+    {
+        long millis = args.length > 0 ? Long.parseLong(args[0]) : 1000;
+        int max = 2 * Runtime.getRuntime().availableProcessors();
+        for (boolean rp : new boolean[] {false, true})
+            for (int n = 1; n <= max; n *= 2)
+            {
+                BohnenspielPlayerParallelMCTS p = new BohnenspielPlayerParallelMCTS(Farbe.WEISSE, n, rp, 22, millis);
+                // once to warm up, once to measure
+                p.chooseMove(new Bohnenspiel());
+                long start = System.nanoTime();
+                int h = p.chooseMove(new Bohnenspiel());
+                double seconds = (System.nanoTime() - start) / 1e9;
+                System.out.println(String.format("%-16s %12.0f playouts/sec  (move %d)", p.getName(), p.getPlayouts() / seconds, h));
+                p.close();
+            }
+    }
+}
@@ -0,0 +1,526 @@
+/**
+ * One thread's alpha-beta search for a BohnenspielPlayer. 
+ * Each search has its own copy of the game and its own counters; the 
+ * transposition table may be shared with the other searches of the player. 
+ */
+import java.util.concurrent.atomic.*;
+
+public class BohnenspielSearch
+{
+    // whose point of view are the scores from?
+    private final Farbe farbe;
+    // remembers searched positions, possibly shared with other threads
+    private final TranspositionTable table;
+    // decides the order in which moves are searched
+    private final MoveOrderer orderer;
+    // counts the cutoffs of the current search
+    private final SearchStatistics statistics = new SearchStatistics();
+    // the ordered moves at each ply
+    private final int[][] buffers = new int[MAXPLY + 1][Bohnenspiel.numberofhouses];
+    // exact values of positions with few beans left, or null
+    private EndgameDatabase endgame;
+    // scores the leaves, or null for the store difference alone
+    private Evaluator evaluator;
+    // the tree search used
+    private SearchAlgorithm algorithm = SearchAlgorithm.MINIMAX;
+    
+    //the deepest search there can be, in plies
+    public static final int MAXPLY = 64;
+    //half the width of the first aspiration window around the last iteration's score
+    private static final int ASPIRATION = 2;
+    
+    //state of the current search
+    private Bohnenspiel game;
+    private AtomicBoolean stop;
+    private long nodes;
+    private long nodeCap;
+    private long deadline;
+    private boolean aborted;
+    private int score;
+    private boolean scored;
+    
+    /**
+     * Constructs a search for player f using table t and ordering strategy s.
+     */
+    public BohnenspielSearch(Farbe f, TranspositionTable t, OrderingStrategy s)
+    {
+        farbe = f;
+        table = t;
+        orderer = new MoveOrderer(s, MAXPLY);
+    }
+    
+    /**
+     * Starts a new search of g, which becomes this search's own copy. 
+     * Setting stop makes the search abort as soon as it notices. 
+     */
+    public void start(Bohnenspiel g, AtomicBoolean s)
+    {
+    	game = g;
+    	stop = s;
+    	nodes = 0;
+    	aborted = false;
+    	scored = false;
+    	nodeCap = Long.MAX_VALUE;
+    	deadline = Long.MAX_VALUE;
+    	orderer.newSearch();
+    	statistics.clear();
+    }
+    
+    /**
+     * Sets the budget of the search: it aborts after n nodes in total, 
+     * or after System.nanoTime() passes d. 
+     */
+    public void setBudget(long n, long d)
+    {
+    	nodeCap = n;
+    	deadline = d;
+    }
+    
+    /**
+     * Returns the number of nodes visited since the search started.
+     */
+    public long getNodes()
+    {
+    	return nodes;
+    }
+    
+    /**
+     * Returns true iff the search ran out of budget or was stopped.
+     */
+    public boolean isAborted()
+    {
+    	return aborted;
+    }
+    
+    /**
+     * Returns the score of the last completed searchRoot, from the searching player's point of view.
+     */
+    public int getScore()
+    {
+    	return score;
+    }
+    
+    /**
+     * Returns the statistics of the current search, which are only counted 
+     * if SearchStatistics.ENABLED.
+     */
+    public SearchStatistics getStatistics()
+    {
+    	return statistics;
+    }
+    
+    /**
+     * Sets the endgame database to probe, or null for none.
+     */
+    public void setEndgameDatabase(EndgameDatabase db)
+    {
+    	endgame = db;
+    }
+    
+    /**
+     * Sets the evaluator of the leaves, or null for the store difference alone.
+     */
+    public void setEvaluator(Evaluator e)
+    {
+    	evaluator = e;
+    }
+    
+    /**
+     * Sets the tree search used.
+     */
+    public void setAlgorithm(SearchAlgorithm a)
+    {
+    	algorithm = a;
+    }
+    
+    /**
+     * Returns the table used by this search.
+     */
+    public TranspositionTable getTable()
+    {
+    	return table;
+    }
+    
+    //Searches every move at the root to depth plies in total, trying pvMove first.
+    //Returns the first move with the highest score
+    public int searchRoot(int depth, int pvMove)	{
+    	if(algorithm == SearchAlgorithm.PVS)	{
+    		return aspirate(depth, pvMove);
+    	}
+    	int move = 0;
+    	int value = -Score.INFINITY;
+    	int[] moves = buffers[0];
+    	int count = orderer.order(game, 0, pvMove, moves);
+    	for(int k = 0; k < count; k++)	{
+    		int i = moves[k]-1;
+    		game.makeMove(i+1);
+    		int bestScore = minimax(game, depth-1, 1, value, Score.INFINITY, Farbe.flip(farbe));
+    		game.unmakeMove();
+    		if(aborted)	{
+    			break;
+    		}
+    		//children after the first are searched with alpha at the best score so far,
+    		//so only a strictly better score is exact
+    		if(move == 0 || bestScore > value)	{
+    			move = i+1;
+    			value = bestScore;
+    		}
+    	}
+    	if(!aborted)	{
+    		score = value;
+    		scored = true;
+    	}
+    	return move;
+    }
+    
+    //PVS at the root: searches a window around the last iteration's score, 
+    //and widens it on the side where the score fell outside until it does not
+    private int aspirate(int depth, int pvMove)	{
+    	int delta = ASPIRATION;
+    	int alpha = -Score.INFINITY;
+    	int beta = Score.INFINITY;
+    	if(scored && !Score.isDecisive(score))	{
+    		alpha = score - delta;
+    		beta = score + delta;
+    	}
+    	for(;;)	{
+    		int[] result = pvsRoot(depth, pvMove, alpha, beta);
+    		if(aborted)	{
+    			return 0;
+    		}
+    		int value = result[1];
+    		if(value <= alpha && alpha > -Score.INFINITY)	{
+    			delta *= 4;
+    			alpha = Score.isDecisive(value) ? -Score.INFINITY : Math.max(-Score.INFINITY, value - delta);
+    		}
+    		else if(value >= beta && beta < Score.INFINITY)	{
+    			delta *= 4;
+    			beta = Score.isDecisive(value) ? Score.INFINITY : Math.min(Score.INFINITY, value + delta);
+    			pvMove = result[0];
+    		}
+    		else	{
+    			score = value;
+    			scored = true;
+    			return result[0];
+    		}
+    	}
+    }
+    
+    //PVS at the root within (alpha, beta): the first move gets the whole window, the rest a null 
+    //window and a re-search if they beat alpha. Returns the best move and its fail-soft score
+    private int[] pvsRoot(int depth, int pvMove, int alpha, int beta)	{
+    	int move = 0;
+    	int value = -Score.INFINITY;
+    	int[] moves = buffers[0];
+    	int count = orderer.order(game, 0, pvMove, moves);
+    	for(int k = 0; k < count; k++)	{
+    		int h = moves[k];
+    		game.makeMove(h);
+    		int s;
+    		if(k == 0)	{
+    			s = -pvs(game, depth-1, 1, -beta, -alpha);
+    		}
+    		else	{
+    			s = -pvs(game, depth-1, 1, -alpha-1, -alpha);
+    			if(s > alpha && s < beta && !aborted)	{
+    				s = -pvs(game, depth-1, 1, -beta, -alpha);
+    			}
+    		}
+    		game.unmakeMove();
+    		if(aborted)	{
+    			break;
+    		}
+    		if(s > value)	{
+    			move = h;
+    			value = s;
+    			alpha = Math.max(alpha, s);
+    			if(alpha >= beta)	{
+    				break;
+    			}
+    		}
+    	}
+    	return new int[] {move, value};
+    }
+    
+    //Searches root move h to depth plies in total with a full window, and returns its exact score
+    public int searchMove(int h, int depth)	{
+    	game.makeMove(h);
+    	int score = algorithm == SearchAlgorithm.PVS 
+    	          ? -pvs(game, depth-1, 1, -Score.INFINITY, Score.INFINITY)
+    	          : minimax(game, depth-1, 1, -Score.INFINITY, Score.INFINITY, Farbe.flip(farbe));
+    	game.unmakeMove();
+    	return score;
+    }
+    
+    //Alpha Beta MiniMax, remembering results in the transposition table.
+    //ply counts the moves made since the root
+    private int minimax(Bohnenspiel game, int depth, int ply, int alpha, int beta, Farbe player)	{
+    	
+    	if(++nodes >= nodeCap || (nodes & 1023) == 0 && (System.nanoTime() > deadline || stop.get()))	{
+    		aborted = true;
+    	}
+    	if(aborted)	{
+    		return 0;
+    	}
+    	if(SearchStatistics.ENABLED)	{
+    		statistics.node(ply);
+    	}
+    	if(depth == 0 || game.isOver())	{
+    		return evaluate(game, ply);
+    	}
+    	
+    	//a position in the endgame database has a proven value, so there is nothing to search
+    	if(endgame != null)	{
+    		int margin = endgame.probe(game);
+    		if(margin != EndgameDatabase.UNKNOWN)	{
+    			return Score.proven(farbe == Farbe.WEISSE ? margin : -margin, ply);
+    		}
+    	}
+    	
+    	//a stored result that is deep enough may answer the question outright,
+    	//otherwise its best move is tried first; wins and losses are stored
+    	//counting from the position, and are converted back to count from the root.
+    	//The table holds scores from the point of view of the player to move,
+    	//so the opponent's are negated, which swaps their bounds
+    	boolean own = player == farbe;
+    	long key = game.getHash();
+    	long entry = table.probe(key);
+    	if(SearchStatistics.ENABLED)	{
+    		statistics.probe(entry != 0);
+    	}
+    	int ttMove = 0;
+    	if(entry != 0)	{
+    		ttMove = TranspositionTable.move(entry);
+    		if(TranspositionTable.depth(entry) >= depth)	{
+    			int score = Score.fromTable(TranspositionTable.score(entry), ply);
+    			int bound = TranspositionTable.bound(entry);
+    			if(!own)	{
+    				score = -score;
+    				bound = flip(bound);
+    			}
+    			if(bound == TranspositionTable.EXACT)	{
+    				return score;
+    			}
+    			else if(bound == TranspositionTable.LOWER)	{
+    				alpha = Math.max(alpha, score);
+    			}
+    			else	{
+    				beta = Math.min(beta, score);
+    			}
+    			if(beta <= alpha)	{
+    				return score;
+    			}
+    		}
+    	}
+    	
+    	int alphaOrig = alpha;
+    	int betaOrig = beta;
+    	int[] moves = buffers[ply];
+    	int count = orderer.order(game, ply, ttMove, moves);
+    	int bestMove = 0;
+    	int value;
+    	if(SearchStatistics.ENABLED)	{
+    		statistics.expand();
+    	}
+    	
+    	if(player == farbe)	{
+    		value = -Score.INFINITY;
+    		for(int k = 0; k < count; k++)	{
+    			int i = moves[k]-1;
+    			game.makeMove(i+1);
+    			int score = minimax(game, depth-1, ply+1, alpha, beta, Farbe.flip(player));
+    			game.unmakeMove();
+    			if(aborted)	{
+    				return 0;
+    			}
+    			if(score > value || bestMove == 0)	{
+    				value = score;
+    				bestMove = i+1;
+    			}
+    			alpha = Math.max(alpha, value);
+    			if(beta <= alpha)	{
+    				if(SearchStatistics.ENABLED)	{
+    					statistics.cutoff(k);
+    				}
+    				orderer.cutoff(game, ply, i+1, depth);
+    				break;
+    			}
+    		}
+    	}
+    	else	{
+    		value = Score.INFINITY;
+    		for(int k = 0; k < count; k++)	{
+    			int i = moves[k]-1;
+    			game.makeMove(i+1);
+    			int score = minimax(game, depth-1, ply+1, alpha, beta, Farbe.flip(player));
+    			game.unmakeMove();
+    			if(aborted)	{
+    				return 0;
+    			}
+    			if(score < value || bestMove == 0)	{
+    				value = score;
+    				bestMove = i+1;
+    			}
+    			beta = Math.min(beta, value);
+    			if(beta <= alpha)	{
+    				if(SearchStatistics.ENABLED)	{
+    					statistics.cutoff(k);
+    				}
+    				orderer.cutoff(game, ply, i+1, depth);
+    				break;
+    			}
+    		}
+    	}
+    	
+    	int bound;
+    	if(value <= alphaOrig)	{
+    		bound = TranspositionTable.UPPER;
+    	}
+    	else if(value >= betaOrig)	{
+    		bound = TranspositionTable.LOWER;
+    	}
+    	else	{
+    		bound = TranspositionTable.EXACT;
+    	}
+    	if(!own)	{
+    		table.store(key, Score.toTable(-value, ply), depth, flip(bound), bestMove);
+    	}
+    	else	{
+    		table.store(key, Score.toTable(value, ply), depth, bound, bestMove);
+    	}
+    	return value;
+    }
+    
+    //The bound of a negated score
+    private static int flip(int bound)	{
+    	return bound == TranspositionTable.EXACT ? bound : TranspositionTable.LOWER + TranspositionTable.UPPER - bound;
+    }
+    
+    //Fail-soft negamax principal variation search, remembering results in the transposition table.
+    //Scores are from the point of view of the player to move; ply counts the moves made since the root
+    private int pvs(Bohnenspiel game, int depth, int ply, int alpha, int beta)	{
+    	
+    	if(++nodes >= nodeCap || (nodes & 1023) == 0 && (System.nanoTime() > deadline || stop.get()))	{
+    		aborted = true;
+    	}
+    	if(aborted)	{
+    		return 0;
+    	}
+    	if(SearchStatistics.ENABLED)	{
+    		statistics.node(ply);
+    	}
+    	boolean own = game.getTurn() == farbe;
+    	if(depth == 0 || game.isOver())	{
+    		int e = evaluate(game, ply);
+    		return own ? e : -e;
+    	}
+    	
+    	//a position in the endgame database has a proven value, so there is nothing to search
+    	if(endgame != null)	{
+    		int margin = endgame.probe(game);
+    		if(margin != EndgameDatabase.UNKNOWN)	{
+    			return Score.proven(game.getTurn() == Farbe.WEISSE ? margin : -margin, ply);
+    		}
+    	}
+    	
+    	//as in minimax, but the table's point of view is already ours
+    	long key = game.getHash();
+    	long entry = table.probe(key);
+    	if(SearchStatistics.ENABLED)	{
+    		statistics.probe(entry != 0);
+    	}
+    	int ttMove = 0;
+    	if(entry != 0)	{
+    		ttMove = TranspositionTable.move(entry);
+    		if(TranspositionTable.depth(entry) >= depth)	{
+    			int score = Score.fromTable(TranspositionTable.score(entry), ply);
+    			int bound = TranspositionTable.bound(entry);
+    			if(bound == TranspositionTable.EXACT
+    			   || bound == TranspositionTable.LOWER && score >= beta
+    			   || bound == TranspositionTable.UPPER && score <= alpha)	{
+    				return score;
+    			}
+    		}
+    	}
+    	
+    	int alphaOrig = alpha;
+    	int[] moves = buffers[ply];
+    	int count = orderer.order(game, ply, ttMove, moves);
+    	int bestMove = 0;
+    	int value = -Score.INFINITY;
+    	if(SearchStatistics.ENABLED)	{
+    		statistics.expand();
+    	}
+    	
+    	for(int k = 0; k < count; k++)	{
+    		int h = moves[k];
+    		game.makeMove(h);
+    		int score;
+    		if(k == 0)	{
+    			score = -pvs(game, depth-1, ply+1, -beta, -alpha);
+    		}
+    		else	{
+    			//a null window only asks whether the move beats alpha
+    			score = -pvs(game, depth-1, ply+1, -alpha-1, -alpha);
+    			if(score > alpha && score < beta && !aborted)	{
+    				score = -pvs(game, depth-1, ply+1, -beta, -alpha);
+    			}
+    		}
+    		game.unmakeMove();
+    		if(aborted)	{
+    			return 0;
+    		}
+    		if(score > value)	{
+    			value = score;
+    			bestMove = h;
+    			if(score > alpha)	{
+    				alpha = score;
+    				if(alpha >= beta)	{
+    					if(SearchStatistics.ENABLED)	{
+    						statistics.cutoff(k);
+    					}
+    					orderer.cutoff(game, ply, h, depth);
+    					break;
+    				}
+    			}
+    		}
+    	}
+    	
+    	int bound;
+    	if(value <= alphaOrig)	{
+    		bound = TranspositionTable.UPPER;
+    	}
+    	else if(value >= beta)	{
+    		bound = TranspositionTable.LOWER;
+    	}
+    	else	{
+    		bound = TranspositionTable.EXACT;
+    	}
+    	table.store(key, Score.toTable(value, ply), depth, bound, bestMove);
+    	return value;
+    }
+    
+    //Simple Evaluate of a position at the root
+    int evaluate(Bohnenspiel game)	{
+    	return evaluate(game, 0);
+    }
+    
+    //Simple Evaluate that takes into account player win conditions and difference between player and opponent;
+    //a finished game is won or lost at ply, or drawn.
+    //PositionBatch.evaluate scores whole blocks of positions the same way
+    int evaluate(Bohnenspiel game, int ply)	{
+    	//reading the stores one at a time saves copying them
+    	int playerStore = game.getStore(farbe.ordinal());
+    	int oppStore = game.getStore(1 - farbe.ordinal());
+    	
+    	if(game.isOver())	{
+    		return Score.over(playerStore - oppStore, ply);
+    	}
+    	else if(evaluator != null)	{
+    		return evaluator.evaluate(game, farbe);
+    	}
+    	else	{
+    		return playerStore - oppStore;
+    	}
+    }
+}
@@ -0,0 +1,226 @@
+/**
+ * Builds an EndgameDatabase by retrograde analysis. 
+ * 
+ * java EndgameBuilder n file   solves every position with at most n beans on the board
+ * 
+ * A move never adds beans to the board, so the layers are solved in order 
+ * of the number of beans on the board, and every position in a layer only 
+ * depends on itself and the layers before it. Moves that capture nothing stay 
+ * in the same layer and may go round in circles, so each layer is solved by 
+ * repeated sweeps that back up the values of the children until nothing changes. 
+ * The sweeps start every position of the layer that is not decided yet at 0, 
+ * so a position from which best play goes round in circles for ever, never 
+ * capturing again, gets the value 0: endless play counts as a draw. 
+ */
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+public class EndgameBuilder
+{
+    private static final int numberofhouses = Bohnenspiel.numberofhouses;
+    private static final int boardsize      = Bohnenspiel.boardsize;
+    private static final int half           = boardsize * Bohnenspiel.beansperhouse / 2;
+    // fails on a layer that has not settled after this many sweeps
+    private static final int maxsweeps      = 1000;
+    // marks a missing child
+    private static final int nochild        = -1;
+    
+    // the largest number of beans on the board to solve
+    private final int maxbeans;
+    // the final store difference of every position, indexed as in EndgameDatabase
+    private final byte[] values;
+
+    /**
+     * Constructs a builder for positions with at most n beans on the board.
+     */
+    public EndgameBuilder(int n)
+    {
+        if (n < 0 || n > EndgameDatabase.maxmaxbeans) throw new IllegalArgumentException("Bad number of beans: " + n);
+        maxbeans = n;
+        values = new byte[(int) EndgameDatabase.size(n)];
+    }
+    
+    /**
+     * Solves every layer in turn.
+     */
+    public void build()
+    {
+        for (int n = 0; n <= maxbeans; n++) 
+        {
+            long start = System.nanoTime();
+            int sweeps = solve(n);
+            System.out.println(String.format("%2d beans: %9d positions, %3d sweeps, %.1f s", n, 
+                               EndgameDatabase.offset(n + 1) - EndgameDatabase.offset(n), sweeps, 
+                               (System.nanoTime() - start) / 1e9));
+        }
+    }
+    
+    /**
+     * Solves the layer with n beans on the board, and returns the number of sweeps taken. 
+     * Throws an exception if the layer does not settle within maxsweeps sweeps.
+     */
+    private int solve(int n)
+    {
+        int first = (int) EndgameDatabase.offset(n);
+        int size  = (int) EndgameDatabase.offset(n + 1) - first;
+        // for each position: the best value over the children outside this layer, 
+        // whether it is known, and the children inside it
+        byte[]    fixed    = new byte[size];
+        boolean[] terminal = new boolean[size];
+        boolean[] hasfixed = new boolean[size];
+        int[]     children = new int[size * numberofhouses];
+        Arrays.fill(children, nochild);
+        
+        // enumerate the boards in rank order, which is lexicographic order
+        int[] board = new int[boardsize];
+        board[boardsize - 1] = n;
+        int i = 0;
+        do
+        {
+            for (int s0 = half - n; s0 <= half; s0++)
+                for (int turn = 0; turn <= 1; turn++, i++)
+                    expand(board, s0, 2 * half - n - s0, turn, i, n, fixed, terminal, hasfixed, children);
+        }
+        while (nextBoard(board));
+        
+        // sweep until nothing changes
+        for (i = 0; i < size; i++) values[first + i] = terminal[i] || hasfixed[i] ? fixed[i] : 0;
+        int sweeps = 0;
+        boolean changed = true;
+        for (; changed && sweeps < maxsweeps; sweeps++)
+        {
+            changed = false;
+            for (i = 0; i < size; i++)
+            {
+                if (terminal[i]) continue;
+                boolean weisse = (i & 1) == 0;
+                int v = hasfixed[i] ? fixed[i] : weisse ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+                for (int k = 0; k < numberofhouses; k++)
+                {
+                    int c = children[i * numberofhouses + k];
+                    if (c == nochild) continue;
+                    v = weisse ? Math.max(v, values[c]) : Math.min(v, values[c]);
+                }
+                if (values[first + i] != v)
+                {
+                    values[first + i] = (byte) v;
+                    changed = true;
+                }
+            }
+        }
+        // values that are still changing are not exact, and must not go into the database
+        if (changed) throw new IllegalStateException(n + " beans: not settled after " + maxsweeps + " sweeps");
+        return sweeps;
+    }
+    
+    /**
+     * Works out the children of position i of the layer with n beans on board.
+     */
+    private void expand(int[] board, int s0, int s1, int turn, int i, int n, 
+                        byte[] fixed, boolean[] terminal, boolean[] hasfixed, int[] children)
+    {
+        int side0 = 0, side1 = 0;
+        for (int k = 0; k < numberofhouses; k++)
+        {
+            side0 += board[k];
+            side1 += board[k + numberofhouses];
+        }
+        // the game is already over: the other side's beans go to its store, as in Bohnenspiel
+        if (side0 == 0 || side1 == 0)
+        {
+            terminal[i] = true;
+            fixed[i] = (byte) (side0 == 0 ? s0 - s1 - side1 : s0 + side0 - s1);
+            return;
+        }
+        long w = (long) s0 << 48 | (turn == 1 ? 1L << 56 : 0);
+        long s = (long) s1 << 48;
+        for (int k = 0; k < numberofhouses; k++)
+        {
+            w |= (long) board[k]                  << (8 * k);
+            s |= (long) board[k + numberofhouses] << (8 * k);
+        }
+        PackedBohnenspiel p = new PackedBohnenspiel(w, s);
+        int best = turn == 0 ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+        for (int moves = p.legalMoves(); moves != 0; moves &= moves - 1)
+        {
+            int h = Integer.numberOfTrailingZeros(moves) + 1;
+            PackedBohnenspiel c = p.copyGame();
+            c.move(h);
+            int v;
+            int m = 2 * half - c.getStore(0) - c.getStore(1);
+            if (c.isOver())
+               v = c.getStore(0) - c.getStore(1);
+            else
+            if (m < n)
+               v = values[(int) index(c, m)];
+            else
+            {
+               children[i * numberofhouses + h - 1] = (int) index(c, m);
+               continue;
+            }
+            best = turn == 0 ? Math.max(best, v) : Math.min(best, v);
+            hasfixed[i] = true;
+        }
+        if (hasfixed[i]) fixed[i] = (byte) best;
+    }
+    
+    /**
+     * Returns the index of c, which has m beans on the board and is not over.
+     */
+    private static long index(PackedBohnenspiel c, int m)
+    {
+        long r = 0;
+        int left = m;
+        for (int k = 0; k < boardsize - 1 && left > 0; k++)
+        {
+            int b = c.getHouse(k);
+            for (int v = 0; v < b; v++) r += EndgameDatabase.boards(left - v, boardsize - 1 - k);
+            left -= b;
+        }
+        return EndgameDatabase.index(m, r, c.getStore(0), c.getTurn().ordinal());
+    }
+    
+    /**
+     * Steps board to the next board with the same number of beans in lexicographic 
+     * order, and returns false if there is none.
+     */
+    private static boolean nextBoard(int[] board)
+    {
+        // find the last house with beans after it, and take one of them into it
+        int tail = board[boardsize - 1];
+        int k = boardsize - 2;
+        while (k >= 0 && tail == 0) tail += board[k--];
+        if (tail == 0 || k < 0) return false;
+        board[k]++;
+        for (int j = k + 1; j < boardsize; j++) board[j] = 0;
+        board[boardsize - 1] = tail - 1;
+        return true;
+    }
+    
+    /**
+     * Writes the database to file.
+     */
+    public void write(Path file) throws IOException
+    {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file))))
+        {
+            out.writeInt(EndgameDatabase.magic);
+            out.writeInt(EndgameDatabase.version);
+            out.writeInt(maxbeans);
+            out.write(values);
+        }
+    }
+    
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length != 2)
+        {
+            System.out.println("usage: java EndgameBuilder maxbeans file");
+            return;
+        }
+        EndgameBuilder b = new EndgameBuilder(Integer.parseInt(args[0]));
+        b.build();
+        b.write(Paths.get(args[1]));
+    }
+}
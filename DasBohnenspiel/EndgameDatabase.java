@@ -0,0 +1,128 @@
+/**
+ * A read-only endgame database for Bohnenspiel, built by EndgameBuilder. 
+ * For every position with at most maxbeans beans left on the board it holds 
+ * the exact final store difference, WEISSE minus SCHWARZ, with best play. 
+ * The file is memory-mapped, so probes cost no more than one array access 
+ * and one database can be shared by any number of threads. 
+ * 
+ * Positions are indexed by combinatorial ranking: the layers for 0, 1, ... 
+ * beans on the board follow each other, and within a layer the index is 
+ * (rank of the board among all boards with that many beans, WEISSE's store, turn). 
+ * Both stores are at most 36 in any position that is not over, so with n 
+ * beans on the board WEISSE's store is one of the n + 1 values 36 - n to 36. 
+ */
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+
+public class EndgameDatabase
+{
+    public static final int magic   = 0x424F484E; // "BOHN"
+    public static final int version = 1;
+    // the bytes before the values: magic, version and maxbeans
+    public static final int headersize = 12;
+    // the largest database that can be built
+    public static final int maxmaxbeans = 10;
+    // returned by probe for positions that are not in the database
+    public static final int UNKNOWN = Integer.MIN_VALUE;
+    
+    private static final int boardsize = Bohnenspiel.boardsize;
+    private static final int half      = boardsize * Bohnenspiel.beansperhouse / 2;
+    
+    // choose[a][b] is a choose b
+    private static final long[][] choose = new long[maxmaxbeans + boardsize + 1][boardsize + 1];
+    static
+    {
+        for (int a = 0; a < choose.length; a++)
+        {
+            choose[a][0] = 1;
+            for (int b = 1; b <= Math.min(a, boardsize); b++)
+                choose[a][b] = choose[a - 1][b - 1] + (b <= a - 1 ? choose[a - 1][b] : 0);
+        }
+    }
+    
+    // the largest number of beans on the board covered
+    private final int maxbeans;
+    // the values, after the header
+    private final ByteBuffer values;
+
+    /**
+     * Opens the database in file.
+     */
+    public EndgameDatabase(Path file) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+        {
+            values = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (values.getInt(0) != magic || values.getInt(4) != version) 
+           throw new IOException("Not an endgame database: " + file);
+        maxbeans = values.getInt(8);
+        if (maxbeans < 0 || maxbeans > maxmaxbeans || values.capacity() != headersize + size(maxbeans))
+           throw new IOException("Endgame database is damaged: " + file);
+    }
+    
+    /**
+     * Returns the largest number of beans on the board covered.
+     */
+    public int getMaxBeans()
+    {
+        return maxbeans;
+    }
+    
+    /**
+     * Returns the final store difference, WEISSE minus SCHWARZ, of game with best play, 
+     * or UNKNOWN if game is over or has too many beans on the board.
+     */
+    public int probe(Bohnenspiel game)
+    {
+        if (game.isOver()) return UNKNOWN;
+        int n = 2 * half - game.getStore(0) - game.getStore(1);
+        if (n > maxbeans) return UNKNOWN;
+        long r = 0;
+        int left = n;
+        for (int k = 0; k < boardsize - 1 && left > 0; k++)
+        {
+            int b = game.getHouse(k);
+            for (int v = 0; v < b; v++) r += boards(left - v, boardsize - 1 - k);
+            left -= b;
+        }
+        return values.get(headersize + (int) index(n, r, game.getStore(0), game.getTurn().ordinal()));
+    }
+    
+    /**
+     * Returns the number of ways of putting n beans into k houses.
+     */
+    static long boards(int n, int k)
+    {
+        return choose[n + k - 1][k - 1];
+    }
+    
+    /**
+     * Returns the index of the position with n beans on a board of rank r, 
+     * s0 beans in WEISSE's store and turn to move.
+     */
+    static long index(int n, long r, int s0, int turn)
+    {
+        return offset(n) + (r * (n + 1) + s0 - (half - n)) * 2 + turn;
+    }
+    
+    /**
+     * Returns the index of the first position with n beans on the board.
+     */
+    static long offset(int n)
+    {
+        long o = 0;
+        for (int m = 0; m < n; m++) o += boards(m, boardsize) * (m + 1) * 2;
+        return o;
+    }
+    
+    /**
+     * Returns the number of positions with at most maxbeans beans on the board.
+     */
+    static long size(int maxbeans)
+    {
+        return offset(maxbeans + 1);
+    }
+}
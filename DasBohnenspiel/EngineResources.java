@@ -0,0 +1,47 @@
+/**
+ * Declares what a Player needs to run: how many threads it searches on 
+ * and how much memory its tables take. Match runners use this to decide 
+ * how many games can be played at once.
+ */
+public final class EngineResources
+{
+    // one thread and nothing else
+    public static final EngineResources MINIMAL = new EngineResources(1, 0);
+    
+    // the number of threads used while choosing a move
+    private final int threads;
+    // the bytes held in tables between moves
+    private final long tableBytes;
+
+    /**
+     * Constructs a declaration of t threads and b bytes of tables.
+     */
+    public EngineResources(int t, long b)
+    {
+        if (t < 1) throw new IllegalArgumentException("Bad thread count: " + t);
+        threads = t;
+        tableBytes = b;
+    }
+    
+    /**
+     * Returns the number of threads used while choosing a move.
+     */
+    public int getThreads()
+    {
+        return threads;
+    }
+    
+    /**
+     * Returns the bytes held in tables between moves.
+     */
+    public long getTableBytes()
+    {
+        return tableBytes;
+    }
+    
+    @Override
+    public String toString()
+    {
+        return threads + " thread" + (threads == 1 ? "" : "s") + ", " + (tableBytes >> 20) + " MB of tables";
+    }
+}
@@ -0,0 +1,12 @@
+/**
+ * Enumerates the features of a position that an Evaluator weighs. 
+ * Each is measured from one player's point of view, as mine minus theirs.
+ */
+public enum EvaluationFeature
+{
+    STORES,   // beans in the stores
+    BEANS,    // beans in the houses on each side
+    MOBILITY, // non-empty houses on each side
+    THREATS,  // the biggest capture the player to move has, counted for that player
+    TARGETS   // houses on the other side holding 1, 3 or 5 beans, which one more bean makes capturable
+}
@@ -0,0 +1,192 @@
+/**
+ * Fits the weights of an Evaluator by SPSA on self-play games.
+ *
+ * Each iteration nudges every weight but the store weight, which sets the
+ * scale, up or down at random, and plays the nudged-up weights against the
+ * nudged-down ones from a set of random openings, each with both colours.
+ * The difference in points moves the weights towards whichever side did
+ * better. The games of an iteration are played in parallel, each pair of
+ * games with fresh players, and an iteration's openings come from its
+ * number, so a run is repeatable for the same arguments.
+ *
+ * java EvaluatorTuner iterations openings depth file [start]
+ *     tunes from the weights in start, or the defaults, and writes them to file
+ */
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+public class EvaluatorTuner
+{
+    // how many plies each opening is played at random
+    private static final int openingplies = 4;
+    // the gain and nudge sizes of SPSA, in weight units, and their decay
+    private static final double a     = 4;
+    private static final double c     = 2;
+    private static final double alpha = 0.602;
+    private static final double gamma = 0.101;
+    // the iterations before the gain decays noticeably
+    private static final double stability = 10;
+    // the size of each player's transposition table
+    private static final int tablebits = 16;
+    
+    // the weights being tuned, as reals so that small steps add up
+    private final double[] weights;
+    // the openings per iteration and the depth of every search
+    private final int openings;
+    private final int depth;
+    // plays the games
+    private final ExecutorService pool;
+    
+    /**
+     * Constructs a tuner starting from start, playing n openings per iteration
+     * to depth d on t threads.
+     */
+    public EvaluatorTuner(Evaluator start, int n, int d, int t)
+    {
+        int[] w = start.getWeights();
+        weights = new double[w.length];
+        for (int k = 0; k < w.length; k++) weights[k] = w[k];
+        openings = n;
+        depth = d;
+        pool = Executors.newFixedThreadPool(t);
+    }
+    
+    /**
+     * Returns the current weights as an evaluator.
+     */
+    public Evaluator getEvaluator()
+    {
+        return new Evaluator(round(weights));
+    }
+    
+    /**
+     * Returns w rounded to integers.
+     */
+    private static int[] round(double[] w)
+    {
+        int[] r = new int[w.length];
+        for (int k = 0; k < w.length; k++) r[k] = (int) Math.round(w[k]);
+        return r;
+    }
+    
+    /**
+     * Runs iteration k, and returns the points of the nudged-up weights
+     * less those of the nudged-down ones, over the most that lead can be:
+     * 4 per opening, so the result is between -1 and 1.
+     */
+    public double iterate(int k) throws InterruptedException, ExecutionException
+    {
+        Random r = new Random(k);
+        double ak = a / Math.pow(k + 1 + stability, alpha);
+        double ck = c / Math.pow(k + 1, gamma);
+        double[] delta = new double[weights.length];
+        double[] plus  = weights.clone();
+        double[] minus = weights.clone();
+        // the store weight is left alone, as it fixes the scale of the others
+        for (int i = 1; i < weights.length; i++)
+        {
+            delta[i] = r.nextBoolean() ? 1 : -1;
+            plus[i]  += ck * delta[i];
+            minus[i] -= ck * delta[i];
+        }
+        Evaluator up   = new Evaluator(round(plus));
+        Evaluator down = new Evaluator(round(minus));
+        
+        List<Future<Integer>> games = new ArrayList<>();
+        for (int g = 0; g < openings; g++)
+        {
+            int[] opening = opening(r);
+            // up's points less down's over the two games, halved
+            games.add(pool.submit(() -> play(up, down, opening) - play(down, up, opening)));
+        }
+        int points = 0;
+        for (Future<Integer> game : games) points += game.get();
+        double result = 2.0 * points / (4.0 * openings);
+        
+        for (int i = 1; i < weights.length; i++) weights[i] += ak * result / (ck * delta[i]);
+        return result;
+    }
+    
+    /**
+     * Returns a random opening of openingplies moves, short of the end of the game.
+     */
+    private static int[] opening(Random r)
+    {
+        int[] moves = new int[openingplies];
+        Bohnenspiel game = new Bohnenspiel();
+        for (int p = 0; p < openingplies && !game.isOver(); p++)
+        {
+            int legal = game.legalMoves();
+            int h;
+            do h = r.nextInt(Bohnenspiel.numberofhouses); while ((legal >>> h & 1) == 0);
+            moves[p] = h + 1;
+            game.move(h + 1);
+        }
+        return moves;
+    }
+    
+    /**
+     * Plays a game from opening between a player with evaluator w as WEISSE and
+     * one with s as SCHWARZ, and returns WEISSE's points: 2 for a win, 1 for a draw.
+     */
+    private int play(Evaluator w, Evaluator s, int[] opening)
+    {
+        BohnenspielPlayer[] players = new BohnenspielPlayer[2];
+        Evaluator[] evaluators = {w, s};
+        for (Farbe f : Farbe.values())
+        {
+            players[f.ordinal()] = new BohnenspielPlayer(f);
+            players[f.ordinal()].setMaxDepth(depth);
+            players[f.ordinal()].setTableSize(tablebits);
+            players[f.ordinal()].setEvaluator(evaluators[f.ordinal()]);
+        }
+        Bohnenspiel game = new Bohnenspiel();
+        for (int h : opening) if (h != 0 && !game.isOver()) game.move(h);
+        while (!game.isOver())
+        {
+            Farbe turn = game.getTurn();
+            game.move(players[turn.ordinal()].chooseMove(game.copyGame(turn)));
+        }
+        int margin = game.getStore(0) - game.getStore(1);
+        return margin > 0 ? 2 : margin == 0 ? 1 : 0;
+    }
+    
+    /**
+     * Stops the threads.
+     */
+    public void shutdown()
+    {
+        pool.shutdownNow();
+    }
+    
+    public static void main(String[] args) throws Exception
+    {
+        if (args.length < 4)
+        {
+            System.out.println("usage: java EvaluatorTuner iterations openings depth file [start]");
+            return;
+        }
+        int iterations = Integer.parseInt(args[0]);
+        Path file = Paths.get(args[3]);
+        Evaluator start = args.length > 4 ? Evaluator.load(Paths.get(args[4])) : new Evaluator();
+        EvaluatorTuner tuner = new EvaluatorTuner(start, Integer.parseInt(args[1]), Integer.parseInt(args[2]),
+                                                  Runtime.getRuntime().availableProcessors());
+        try
+        {
+            for (int k = 0; k < iterations; k++)
+            {
+                long t = System.nanoTime();
+                double result = tuner.iterate(k);
+                System.out.println(String.format("%4d %+.3f %s  %.1f s", k, result,
+                                                 Arrays.toString(tuner.getEvaluator().getWeights()), (System.nanoTime() - t) / 1e9));
+                tuner.getEvaluator().save(file);
+            }
+        }
+        finally
+        {
+            tuner.shutdown();
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/**
+ * One finished game of Bohnenspiel as GameRecordWriter stores it: the names of 
+ * the WEISSE and SCHWARZ players, the moves played from the starting position, 
+ * one per byte, and the result. A game that ended with an illegal move is a 
+ * forfeit; its moves are the legal ones played before it.
+ */
+public final class GameRecord
+{
+    // the players
+    private final String weisse;
+    private final String schwarz;
+    // the moves, 1-6 each
+    private final byte[] moves;
+    // WEISSE's points: 2 for a win, 1 for a draw, 0 for a loss
+    private final int result;
+    // did the game end with an illegal move?
+    private final boolean forfeit;
+    
+    /**
+     * Constructs a record of a game between w as WEISSE and s as SCHWARZ, with 
+     * moves m, in which WEISSE scored r points, ended by an illegal move iff f.
+     */
+    public GameRecord(String w, String s, byte[] m, int r, boolean f)
+    {
+        if (r < 0 || r > 2) throw new IllegalArgumentException("Bad result: " + r);
+        weisse = w;
+        schwarz = s;
+        moves = m;
+        result = r;
+        forfeit = f;
+    }
+    
+    /**
+     * Returns the name of the player of colour f.
+     */
+    public String getName(Farbe f)
+    {
+        return f == Farbe.WEISSE ? weisse : schwarz;
+    }
+    
+    /**
+     * Returns the number of moves played.
+     */
+    public int getLength()
+    {
+        return moves.length;
+    }
+    
+    /**
+     * Returns move k, from 0.
+     */
+    public int getMove(int k)
+    {
+        return moves[k];
+    }
+    
+    /**
+     * Returns the points of the player of colour f: 2 for a win, 1 for a draw, 0 for a loss.
+     */
+    public int getResult(Farbe f)
+    {
+        return f == Farbe.WEISSE ? result : 2 - result;
+    }
+    
+    /**
+     * Returns true iff the game ended with an illegal move.
+     */
+    public boolean isForfeit()
+    {
+        return forfeit;
+    }
+    
+    /**
+     * Plays the moves from the starting position and returns the final position. 
+     * Throws IllegalArgumentException if a move is illegal.
+     */
+    public Bohnenspiel replay()
+    {
+        Bohnenspiel game = new Bohnenspiel();
+        for (byte h : moves)
+        {
+            if (game.isOver()) throw new IllegalArgumentException("Move after the end of the game: " + h);
+            game.move(h);
+        }
+        return game;
+    }
+    
+    /**
+     * Returns the moves, e.g. as for a record of another copy.
+     */
+    byte[] getMoves()
+    {
+        return moves;
+    }
+}
@@ -0,0 +1,109 @@
+/**
+ * Reads the GameRecords written by GameRecordWriter one at a time, so that 
+ * files of any number of games can be read in constant memory. 
+ * 
+ * java GameRecordReader file   replays every game and reports what they hold
+ */
+import java.io.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.function.*;
+
+public class GameRecordReader implements Closeable
+{
+    // the file, through a large buffer
+    private final DataInputStream in;
+    // holds a name while it is decoded
+    private final byte[] name = new byte[GameRecordWriter.maxname];
+    
+    /**
+     * Opens file and checks its header.
+     */
+    public GameRecordReader(Path file) throws IOException
+    {
+        in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16));
+        if (in.readInt() != GameRecordWriter.magic || in.readInt() != GameRecordWriter.version)
+        {
+            in.close();
+            throw new IOException("Not a game record file: " + file);
+        }
+    }
+    
+    /**
+     * Returns the next game, or null at the end of the file.
+     */
+    public GameRecord read() throws IOException
+    {
+        int flags = in.read();
+        if (flags < 0) return null;
+        try
+        {
+            String weisse  = readName();
+            String schwarz = readName();
+            byte[] moves = new byte[in.readUnsignedShort()];
+            in.readFully(moves);
+            return new GameRecord(weisse, schwarz, moves, flags & 3, (flags & GameRecordWriter.forfeitbit) != 0);
+        }
+        catch (EOFException | IllegalArgumentException e)
+        {
+            throw new IOException("Game record file is damaged", e);
+        }
+    }
+    
+    /**
+     * Reads a name.
+     */
+    private String readName() throws IOException
+    {
+        int n = in.readUnsignedByte();
+        in.readFully(name, 0, n);
+        return new String(name, 0, n, StandardCharsets.UTF_8);
+    }
+    
+    /**
+     * Passes every remaining game to action, in order.
+     */
+    public void forEach(Consumer<GameRecord> action) throws IOException
+    {
+        for (GameRecord r = read(); r != null; r = read()) action.accept(r);
+    }
+    
+    @Override
+    public void close() throws IOException
+    {
+        in.close();
+    }
+    
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length != 1)
+        {
+            System.out.println("usage: java GameRecordReader file");
+            return;
+        }
+        // games, moves, WEISSE wins, draws, SCHWARZ wins, forfeits, and games whose result does not replay
+        long[] counts = new long[7];
+        long start = System.nanoTime();
+        try (GameRecordReader reader = new GameRecordReader(Paths.get(args[0])))
+        {
+            reader.forEach(r -> 
+            {
+                counts[0]++;
+                counts[1] += r.getLength();
+                counts[4 - r.getResult(Farbe.WEISSE)]++;
+                if (r.isForfeit()) counts[5]++;
+                else
+                {
+                    Bohnenspiel game = r.replay();
+                    int margin = game.getStore(0) - game.getStore(1);
+                    if (!game.isOver() || Integer.signum(margin) + 1 != r.getResult(Farbe.WEISSE)) counts[6]++;
+                }
+            });
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.println(String.format("%d games, %.1f moves/game: %d WEISSE wins, %d draws, %d SCHWARZ wins, %d forfeits", 
+                                         counts[0], counts[0] == 0 ? 0 : (double) counts[1] / counts[0], counts[2], counts[3], counts[4], counts[5]));
+        if (counts[6] > 0) System.out.println(counts[6] + " games do not replay to their result");
+        System.out.println(String.format("replayed in %.1f s, %.0f games/sec", seconds, counts[0] / seconds));
+    }
+}
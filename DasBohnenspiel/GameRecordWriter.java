@@ -0,0 +1,79 @@
+/**
+ * Writes GameRecords to a file in a compact binary form: a header of a magic 
+ * number and a version, then for each game 
+ * 
+ *   byte    WEISSE's points (bits 0-1), and bit 2 set iff the game was a forfeit 
+ *   byte    length n of WEISSE's name in UTF-8, then n bytes 
+ *   byte    length n of SCHWARZ's name in UTF-8, then n bytes 
+ *   short   the number m of moves, then m bytes of moves 
+ * 
+ * Records are buffered and written in large blocks. One writer can be shared 
+ * by the threads of a Tournament, as write is synchronized. 
+ */
+import java.io.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+
+public class GameRecordWriter implements Closeable
+{
+    public static final int magic   = 0x42475246; // "BGRF"
+    public static final int version = 1;
+    // the longest name kept, in UTF-8 bytes, and the longest game
+    public static final int maxname  = 255;
+    public static final int maxmoves = 65535;
+    // the flag in the result byte of a forfeit
+    public static final int forfeitbit = 4;
+    
+    // the file, through a large buffer
+    private final DataOutputStream out;
+    // the number of games written
+    private long games;
+    
+    /**
+     * Creates file, replacing any file of that name, and writes the header.
+     */
+    public GameRecordWriter(Path file) throws IOException
+    {
+        out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16));
+        out.writeInt(magic);
+        out.writeInt(version);
+    }
+    
+    /**
+     * Appends r.
+     */
+    public synchronized void write(GameRecord r) throws IOException
+    {
+        if (r.getLength() > maxmoves) throw new IllegalArgumentException("Game too long to record: " + r.getLength());
+        out.writeByte(r.getResult(Farbe.WEISSE) | (r.isForfeit() ? forfeitbit : 0));
+        for (Farbe f : Farbe.values())
+        {
+            byte[] name = r.getName(f).getBytes(StandardCharsets.UTF_8);
+            int n = Math.min(name.length, maxname);
+            // a cut name ends before a whole character, never inside one
+            if (n < name.length) while (n > 0 && (name[n] & 0xC0) == 0x80) n--;
+            out.writeByte(n);
+            out.write(name, 0, n);
+        }
+        out.writeShort(r.getLength());
+        out.write(r.getMoves());
+        games++;
+    }
+    
+    /**
+     * Returns the number of games written.
+     */
+    public synchronized long getGames()
+    {
+        return games;
+    }
+    
+    /**
+     * Writes any buffered records and closes the file.
+     */
+    @Override
+    public synchronized void close() throws IOException
+    {
+        out.close();
+    }
+}
@@ -4,6 +4,8 @@
  */
 import java.awt.*;
 import java.awt.event.*; 
+import java.io.*;
+import java.nio.file.*;
 
 public class Lab7 implements MouseListener
 {
@@ -106,34 +108,23 @@ public class Lab7 implements MouseListener
     }
     
     /**
-     * Runs the computer player against a range of built-in players.
+     * Runs the computer player against a range of built-in players, 
+     * recording the games to the file args[0] if it is given.
      */
-    public static void main(String[] args)
+    public static void main(String[] args) throws IOException
     {
-        BohnenspielPlayer b;
-        BohnenspielPlayerBuiltin opponent;
         int gamesPerOpponent = 10;
-        int score = 0;
-        // for each colour
-        for (Farbe f : Farbe.values())
+        Tournament t = new Tournament(gamesPerOpponent);
+        if (args.length > 0)
         {
-           b = new BohnenspielPlayer(f);
-           // for each strategy
-           for (BuiltinStrategy k : BuiltinStrategy.values())
-           {
-               opponent = new BohnenspielPlayerBuiltin(k, Farbe.flip(f));
-               if (f == Farbe.first()) System.out.println(b.getName() + " vs " + opponent.getName());
-               else                    System.out.println(opponent.getName() + " vs " + b.getName());
-               int[] results = {0, 0, 0}; // losses, draws, wins
-               // for some number of repetitions
-               for (int g = 0; g < gamesPerOpponent; g++)
-                   results[new ManageBohnenspielGame(b, opponent).getResult()] += 1;
-               System.out.println(results[2] + " wins, " + results[1] + " draws, " + results[0] + " losses");
-               score += results[1] + 2 * results[2];
-           }
+            try (GameRecordWriter w = new GameRecordWriter(Paths.get(args[0])))
+            {
+                t.setRecorder(w);
+                t.play();
+            }
         }
-        System.out.println("Total points = " + score + "/" + 2 * 2 * BuiltinStrategy.values().length * gamesPerOpponent);
-        System.out.println();
+        else t.play();
+        t.report();
     }
     
    private double distance(double x1, double y1, double x2, double y2)
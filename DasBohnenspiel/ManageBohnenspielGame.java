@@ -1,23 +1,39 @@
 /**
- * Manages a single game of Bohnenspiel between an "intelligent" player and a built-in player. 
+ * Manages a single game of Bohnenspiel between two players, 
+ * usually an "intelligent" player and a built-in player. 
  */
+import java.io.*;
+import java.util.*;
+
 public class ManageBohnenspielGame
 {
     // the game
     private Bohnenspiel game;
     // the players
-    private BohnenspielPlayer        player;
-    private BohnenspielPlayerBuiltin builtin;
-    // the result: 2 if player wins, 0 if builtin wins, 1 if it's a draw
+    private Player player;
+    private Player opponent;
+    // the result: 2 if player wins, 0 if opponent wins, 1 if it's a draw
     int result;
+    // where the game is recorded, or null
+    private GameRecordWriter recorder;
 
     /**
      * Constructs and plays a game of Bohnenspiel between p and b.
      */
-    public ManageBohnenspielGame(BohnenspielPlayer p, BohnenspielPlayerBuiltin b)
+    public ManageBohnenspielGame(Player p, Player b)
     {
+        this(p, b, null);
+    }
+    
+    /**
+     * Constructs and plays a game of Bohnenspiel between p and b, 
+     * and records it with w unless w is null.
+     */
+    public ManageBohnenspielGame(Player p, Player b, GameRecordWriter w)
+    {
+        recorder = w;
         player = p;
-        builtin = b;
+        opponent = b;
         game = new Bohnenspiel();
         if (Lab7.RECORDINGGAMES) game.display(0);
         result = playGame();
@@ -25,7 +41,7 @@ public class ManageBohnenspielGame
         if (result == 1) s = "Draw: ";
         else 
         if (result == 2) s =  player.getName() + " wins: ";
-        else             s = builtin.getName() + " wins: ";
+        else             s = opponent.getName() + " wins: ";
         // System.out.print(s);
     }
     
@@ -45,6 +61,8 @@ public class ManageBohnenspielGame
     {
         int move = 0;
         Farbe turn = Farbe.first();
+        byte[] moves = new byte[64];
+        int played = 0;
         while (!game.isOver() && move >= 0)
         {
             Bohnenspiel g = game.copyGame(turn);
@@ -58,11 +76,11 @@ public class ManageBohnenspielGame
                 catch (IllegalArgumentException e) {move = -1;}
             }
             else                          
-            if (turn == builtin.getFarbe()) 
+            if (turn == opponent.getFarbe()) 
             {
                 try 
                 {
-                    move = builtin.chooseMove(g);
+                    move = opponent.chooseMove(g);
                     game.move(move);
                 }
                 catch (IllegalArgumentException e) {move = -2;}
@@ -70,16 +88,41 @@ public class ManageBohnenspielGame
             else
             assert false : "Something wrong in playGame";
             if (Lab7.RECORDINGGAMES) game.display(move);
-            try {Thread.sleep(0);} catch (Exception e){};
+            if (move > 0)
+            {
+                if (played == moves.length) moves = Arrays.copyOf(moves, 2 * played);
+                moves[played++] = (byte) move;
+            }
             turn = Farbe.flip(turn);
         }
         if (move < 0) 
            System.out.println("Illegal move played by " + turn + " " + move);
+        int points = points(move);
+        if (recorder != null) 
+        {
+            Player w = player.getFarbe() == Farbe.WEISSE ? player : opponent;
+            Player s = w == player ? opponent : player;
+            GameRecord r = new GameRecord(w.getName(), s.getName(), Arrays.copyOf(moves, played), 
+                                          w == player ? points : 2 - points, move < 0);
+            try 
+            {
+                recorder.write(r);
+            }
+            catch (IOException e) {throw new UncheckedIOException("Cannot record game", e);}
+        }
+        return points;
+    }
+    
+    /**
+     * Returns the points for the player once the game has ended with move.
+     */
+    private int points(int move)
+    {
         if (move == -2 ||
-            game.getStores()[player.getFarbe().ordinal()] > game.getStores()[builtin.getFarbe().ordinal()]) return 2;
+            game.getStores()[player.getFarbe().ordinal()] > game.getStores()[opponent.getFarbe().ordinal()]) return 2;
         else
         if (move == -1 ||
-            game.getStores()[player.getFarbe().ordinal()] < game.getStores()[builtin.getFarbe().ordinal()]) return 0;
+            game.getStores()[player.getFarbe().ordinal()] < game.getStores()[opponent.getFarbe().ordinal()]) return 0;
         else
         return 1;
     }
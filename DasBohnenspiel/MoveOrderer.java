@@ -0,0 +1,109 @@
+/**
+ * Orders the moves at each node of one thread's alpha-beta search, 
+ * and learns from the moves that cause cutoffs.
+ */
+import java.util.*;
+
+public class MoveOrderer
+{
+    // which heuristics do we use?
+    private final OrderingStrategy strategy;
+    // the two most recent quiet moves that caused a cutoff at each ply
+    private final int[][] killers;
+    // how often each move of each side has caused a cutoff, weighted by depth
+    private final int[][] history;
+    // the sort keys of the moves being ordered
+    private final int[] keys = new int[Bohnenspiel.numberofhouses];
+    
+    // the sort keys of the heuristics, most important first
+    private static final int hashkey    = 1 << 30;
+    private static final int capturekey = 1 << 24;
+    private static final int killerkey  = 1 << 22;
+    private static final int historymax = 1 << 20;
+
+    /**
+     * Constructs an orderer using strategy s for searches up to maxply plies deep.
+     */
+    public MoveOrderer(OrderingStrategy s, int maxply)
+    {
+        strategy = s;
+        killers = new int[maxply + 1][2];
+        history = new int[Bohnenspiel.numberofstores][Bohnenspiel.numberofhouses + 1];
+    }
+    
+    /**
+     * Returns the strategy in use.
+     */
+    public OrderingStrategy getStrategy()
+    {
+        return strategy;
+    }
+    
+    /**
+     * Forgets the killers and ages the history, ready for a new search.
+     */
+    public void newSearch()
+    {
+        for (int[] k : killers) Arrays.fill(k, 0);
+        for (int[] h : history)
+            for (int m = 0; m < h.length; m++) h[m] /= 2;
+    }
+    
+    /**
+     * Writes the legal moves of game into out in the order they should be 
+     * searched, and returns how many there are. 
+     * ttMove is the move to try first, or 0 if there is none. 
+     */
+    public int order(Bohnenspiel game, int ply, int ttMove, int[] out)
+    {
+        int n = 0;
+        int side = game.getTurn().ordinal();
+        // each strategy uses the heuristics of the ones before it
+        boolean hash     = strategy.compareTo(OrderingStrategy.HASH)     >= 0;
+        boolean captures = strategy.compareTo(OrderingStrategy.CAPTURES) >= 0;
+        boolean killer   = strategy.compareTo(OrderingStrategy.KILLERS)  >= 0;
+        boolean hist     = strategy.compareTo(OrderingStrategy.HISTORY)  >= 0;
+        for (int moves = game.legalMoves(); moves != 0; moves &= moves - 1)
+        {
+            int h = Integer.numberOfTrailingZeros(moves) + 1;
+            int key = 0;
+            if (hist) key += history[side][h];
+            if (killer)
+            {
+                if      (h == killers[ply][0]) key += killerkey * 2;
+                else if (h == killers[ply][1]) key += killerkey;
+            }
+            if (captures) key += capturekey * game.captures(h);
+            if (hash && h == ttMove) key += hashkey;
+            // insertion sort, keeping houses with equal keys in index order
+            int k = n++;
+            for (; k > 0 && keys[k - 1] < key; k--)
+            {
+                keys[k] = keys[k - 1];
+                out[k]  = out[k - 1];
+            }
+            keys[k] = key;
+            out[k]  = h;
+        }
+        return n;
+    }
+    
+    /**
+     * Records that move h by side caused a cutoff at ply with depth plies to go.
+     */
+    public void cutoff(Bohnenspiel game, int ply, int h, int depth)
+    {
+        if (game.captures(h) > 0) return;
+        if (killers[ply][0] != h)
+        {
+            killers[ply][1] = killers[ply][0];
+            killers[ply][0] = h;
+        }
+        int side = game.getTurn().ordinal();
+        history[side][h] += depth * depth;
+        // keep the history below the other heuristics
+        if (history[side][h] >= historymax)
+            for (int[] hs : history)
+                for (int m = 0; m < hs.length; m++) hs[m] /= 2;
+    }
+}
@@ -0,0 +1,67 @@
+/**
+ * A read-only opening book for Bohnenspiel, built by OpeningBookBuilder. 
+ * It maps the Zobrist keys of early positions to the best move found by a 
+ * deep search. The file holds the sorted keys followed by their moves, and 
+ * is memory-mapped, so one book can be shared by any number of players 
+ * and threads. 
+ */
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+
+public class OpeningBook
+{
+    public static final int magic   = 0x424F4F4B; // "BOOK"
+    public static final int version = 1;
+    // the bytes before the keys: magic, version and the number of entries
+    public static final int headersize = 12;
+    
+    // the number of positions in the book
+    private final int size;
+    // the whole file
+    private final ByteBuffer buffer;
+
+    /**
+     * Opens the book in file.
+     */
+    public OpeningBook(Path file) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+        {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.getInt(0) != magic || buffer.getInt(4) != version) 
+           throw new IOException("Not an opening book: " + file);
+        size = buffer.getInt(8);
+        if (size < 0 || buffer.capacity() != headersize + 9L * size)
+           throw new IOException("Opening book is damaged: " + file);
+    }
+    
+    /**
+     * Returns the number of positions in the book.
+     */
+    public int size()
+    {
+        return size;
+    }
+    
+    /**
+     * Returns the book move for game, or 0 if game is not in the book.
+     */
+    public int probe(Bohnenspiel game)
+    {
+        long key = game.getHash();
+        // binary search of the sorted keys
+        int lo = 0, hi = size - 1;
+        while (lo <= hi)
+        {
+            int mid = (lo + hi) >>> 1;
+            long k = buffer.getLong(headersize + 8 * mid);
+            if      (k < key) lo = mid + 1;
+            else if (k > key) hi = mid - 1;
+            else              return buffer.get(headersize + 8 * size + mid);
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,95 @@
+/**
+ * Builds an OpeningBook by searching every position reachable from the 
+ * start of the game in at most some number of plies. 
+ * 
+ * java OpeningBookBuilder plies depth file
+ */
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+public class OpeningBookBuilder
+{
+    // how many plies from the start are covered
+    private final int plies;
+    // how deep each position is searched
+    private final int depth;
+    // the best move found for each position, by Zobrist key
+    private final TreeMap<Long, Integer> book = new TreeMap<>();
+    // the smallest ply each position has been reached at, by Zobrist key
+    private final HashMap<Long, Integer> seen = new HashMap<>();
+    // one player of each colour, keeping their tables from position to position
+    private final BohnenspielPlayer[] players;
+
+    /**
+     * Constructs a builder for the first p plies, searching each position d plies deep.
+     */
+    public OpeningBookBuilder(int p, int d)
+    {
+        if (p < 0) throw new IllegalArgumentException("Bad number of plies: " + p);
+        plies = p;
+        depth = d;
+        players = new BohnenspielPlayer[] {new BohnenspielPlayer(Farbe.WEISSE), new BohnenspielPlayer(Farbe.SCHWARZ)};
+        for (BohnenspielPlayer b : players) b.setMaxDepth(d);
+    }
+    
+    /**
+     * Searches every position in the first plies of the game.
+     */
+    public void build()
+    {
+        add(new Bohnenspiel(), 0);
+    }
+    
+    /**
+     * Searches game and every position up to ply plies after it.
+     */
+    private void add(Bohnenspiel game, int ply)
+    {
+        if (ply == plies || game.isOver()) return;
+        // a transposition reached no earlier than before has nothing new below it
+        Integer before = seen.get(game.getHash());
+        if (before != null && ply >= before) return;
+        seen.put(game.getHash(), ply);
+        if (before == null)
+        {
+            book.put(game.getHash(), players[game.getTurn().ordinal()].chooseMove(game));
+            if (book.size() % 1000 == 0) System.out.println(book.size() + " positions");
+        }
+        for (int moves = game.legalMoves(); moves != 0; moves &= moves - 1)
+        {
+            game.makeMove(Integer.numberOfTrailingZeros(moves) + 1);
+            add(game, ply + 1);
+            game.unmakeMove();
+        }
+    }
+    
+    /**
+     * Writes the book to file: the keys in ascending order, then their moves.
+     */
+    public void write(Path file) throws IOException
+    {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file))))
+        {
+            out.writeInt(OpeningBook.magic);
+            out.writeInt(OpeningBook.version);
+            out.writeInt(book.size());
+            for (long key : book.keySet())   out.writeLong(key);
+            for (int move : book.values())   out.writeByte(move);
+        }
+    }
+    
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length != 3)
+        {
+            System.out.println("usage: java OpeningBookBuilder plies depth file");
+            return;
+        }
+        OpeningBookBuilder b = new OpeningBookBuilder(Integer.parseInt(args[0]), Integer.parseInt(args[1]));
+        long start = System.nanoTime();
+        b.build();
+        b.write(Paths.get(args[2]));
+        System.out.println(String.format("%d positions in %.1f s", b.book.size(), (System.nanoTime() - start) / 1e9));
+    }
+}
@@ -0,0 +1,12 @@
+/**
+ * Enumerates the move-ordering heuristics of the alpha-beta search. 
+ * Each strategy uses all the heuristics of the ones before it.
+ */
+public enum OrderingStrategy
+{
+    INDEX,    // houses in index order
+    HASH,     // the transposition-table or principal-variation move first
+    CAPTURES, // then captures, biggest first
+    KILLERS,  // then the two killer moves of the ply
+    HISTORY   // then the rest by their history scores
+}
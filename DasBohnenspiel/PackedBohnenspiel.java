@@ -0,0 +1,270 @@
+/**
+ * A compact representation of a Bohnenspiel position, packed into two longs.
+ * Each side of the board is one word: the six houses are bytes 0-5 and
+ * the store is byte 6. The WEISSE word also holds the turn (bit 56) and
+ * the game status (bit 57).
+ * move gives exactly the same results as Bohnenspiel.move.
+ */
+public final class PackedBohnenspiel
+{
+    private static final int numberofhouses = Bohnenspiel.numberofhouses;
+    private static final int boardsize      = Bohnenspiel.boardsize;
+    private static final int half           = boardsize * Bohnenspiel.beansperhouse / 2;
+    
+    // one in each house byte of a word
+    private static final long lanes    = 0x0000010101010101L;
+    // the house bytes of a word
+    private static final long houses   = 0x0000FFFFFFFFFFFFL;
+    // where the store, the turn and the game status live
+    private static final int  storeshift = 48;
+    private static final long turnbit    = 1L << 56;
+    private static final long overbit    = 1L << 57;
+    
+    // spread[m] has a one in the byte of each house whose bit is set in the 6-bit mask m
+    private static final long[] spread = new long[1 << numberofhouses];
+    static
+    {
+        for (int m = 0; m < spread.length; m++)
+            for (int k = 0; k < numberofhouses; k++)
+                if ((m >>> k & 1) == 1) spread[m] |= 1L << (8 * k);
+    }
+    
+    // the WEISSE side of the board, its store, the turn and the game status
+    private long weisse;
+    // the SCHWARZ side of the board and its store
+    private long schwarz;
+    
+    /**
+     * Constructs the starting position of a game of Bohnenspiel.
+     */
+    public PackedBohnenspiel()
+    {
+        this(lanes * Bohnenspiel.beansperhouse, lanes * Bohnenspiel.beansperhouse);
+    }
+    
+    /**
+     * Constructs a position from its two words, as returned by getWeisse and getSchwarz.
+     */
+    public PackedBohnenspiel(long w, long s)
+    {
+        weisse  = w;
+        schwarz = s;
+    }
+    
+    /**
+     * Packs the position of game.
+     */
+    public PackedBohnenspiel(Bohnenspiel game)
+    {
+        int[] board  = game.getBoard();
+        int[] stores = game.getStores();
+        for (int k = 0; k < numberofhouses; k++)
+        {
+            weisse  |= (long) board[k]                  << (8 * k);
+            schwarz |= (long) board[k + numberofhouses] << (8 * k);
+        }
+        weisse  |= (long) stores[0] << storeshift;
+        schwarz |= (long) stores[1] << storeshift;
+        if (game.getTurn() == Farbe.SCHWARZ) weisse |= turnbit;
+        if (game.isOver())                   weisse |= overbit;
+    }
+    
+    /**
+     * Returns the position as a Bohnenspiel.
+     * The position must not be over, as Bohnenspiel checks the bean total.
+     */
+    public Bohnenspiel toBohnenspiel()
+    {
+        return new Bohnenspiel(getBoard(), getStores(), getTurn());
+    }
+    
+    /**
+     * Returns a copy of this position.
+     */
+    public PackedBohnenspiel copyGame()
+    {
+        return new PackedBohnenspiel(weisse, schwarz);
+    }
+    
+    /**
+     * Sets this position from its two words, as returned by getWeisse and getSchwarz.
+     */
+    public void set(long w, long s)
+    {
+        weisse  = w;
+        schwarz = s;
+    }
+    
+    /**
+     * Returns the WEISSE word.
+     */
+    public long getWeisse()
+    {
+        return weisse;
+    }
+    
+    /**
+     * Returns the SCHWARZ word.
+     */
+    public long getSchwarz()
+    {
+        return schwarz;
+    }
+    
+    /**
+     * Returns the number of beans in house k, 0 <= k < boardsize.
+     */
+    public int getHouse(int k)
+    {
+        long word = k < numberofhouses ? weisse : schwarz;
+        return (int) (word >>> (8 * (k % numberofhouses))) & 0xFF;
+    }
+    
+    /**
+     * Returns the number of beans in store t.
+     */
+    public int getStore(int t)
+    {
+        return (int) ((t == 0 ? weisse : schwarz) >>> storeshift) & 0xFF;
+    }
+    
+    /**
+     * Returns a copy of the board.
+     */
+    public int[] getBoard()
+    {
+        int[] board = new int[boardsize];
+        for (int k = 0; k < boardsize; k++) board[k] = getHouse(k);
+        return board;
+    }
+    
+    /**
+     * Returns a copy of the stores.
+     */
+    public int[] getStores()
+    {
+        return new int[] {getStore(0), getStore(1)};
+    }
+    
+    /**
+     * Returns the colour whose turn it is.
+     */
+    public Farbe getTurn()
+    {
+        return (weisse & turnbit) == 0 ? Farbe.WEISSE : Farbe.SCHWARZ;
+    }
+    
+    /**
+     * Returns the game status.
+     */
+    public boolean isOver()
+    {
+        return (weisse & overbit) != 0;
+    }
+    
+    /**
+     * Returns the legal moves for player turn as a bitmask:
+     * bit h - 1 is set iff move h is legal. Returns 0 if the game is over.
+     */
+    public int legalMoves()
+    {
+        if (isOver()) return 0;
+        long x = ((weisse & turnbit) == 0 ? weisse : schwarz) & houses;
+        // fold each non-empty house down to the low bit of its byte
+        x |= x >>> 4;
+        x |= x >>> 2;
+        x |= x >>> 1;
+        x &= lanes;
+        // gather the low bits of the six bytes into bits 40-45
+        return (int) ((x * 0x0000010204081020L) >>> 40) & 0x3F;
+    }
+    
+    /**
+     * Performs move h for player turn.
+     */
+    public void move(int h) throws IllegalArgumentException
+    {
+        if (isOver()) return;
+        if (h < 1 || h > numberofhouses)
+           throw new IllegalArgumentException ("Illegal move: " + h  + " is out of range");
+        int turn  = (int) (weisse >>> 56) & 1;
+        int house = turn * numberofhouses + h - 1;
+        int beans = getHouse(house);
+        if (beans == 0)
+           throw new IllegalArgumentException ("Illegal move: " + h + " is empty");
+        // empty the house
+        long pick = 0xFFL << (8 * (h - 1));
+        if (turn == 0) weisse  &= ~pick;
+        else           schwarz &= ~pick;
+        // every house gets one bean per full lap, including the one just emptied
+        int laps = beans / boardsize;
+        int rest = beans - laps * boardsize;
+        // the houses after house that get one more bean, as a 12-bit mask
+        int m = ((1 << rest) - 1) << (house + 1);
+        m = (m | m >>> boardsize) & ((1 << boardsize) - 1);
+        weisse  += laps * lanes + spread[m & 0x3F];
+        schwarz += laps * lanes + spread[m >>> numberofhouses];
+        // check for a capture
+        int finalhouse = house + rest;
+        finalhouse -= boardsize & ((boardsize - 1 - finalhouse) >> 31);
+        long captured = 0;
+        for (;;)
+        {
+            int b = getHouse(finalhouse);
+            if (b > 6 || (0x54 >>> b & 1) == 0) break;
+            captured += b;
+            long clear = ~(0xFFL << (8 * (finalhouse % numberofhouses)));
+            if (finalhouse < numberofhouses) weisse  &= clear;
+            else                             schwarz &= clear;
+            finalhouse = (finalhouse == 0 ? boardsize : finalhouse) - 1;
+        }
+        if (turn == 0) weisse  += captured << storeshift;
+        else           schwarz += captured << storeshift;
+        weisse ^= turnbit;
+        gameOver();
+    }
+    
+    /**
+     * Sets the game status iff the game is over, sweeping the remaining beans
+     * into the stores exactly as Bohnenspiel does.
+     */
+    private void gameOver()
+    {
+        if (getStore(0) > half || getStore(1) > half)
+           weisse |= overbit;
+        else
+        if ((weisse & houses) == 0)
+        {
+           weisse  |= overbit;
+           schwarz += (long) sum(schwarz) << storeshift;
+        }
+        else
+        if ((schwarz & houses) == 0)
+        {
+           weisse |= overbit;
+           weisse += (long) sum(weisse) << storeshift;
+        }
+    }
+    
+    /**
+     * Returns the number of beans in the houses of word.
+     */
+    private static int sum(long word)
+    {
+        return (int) (((word & houses) * lanes) >>> 40) & 0xFF;
+    }
+    
+    @Override
+    public boolean equals(Object o)
+    {
+        if (!(o instanceof PackedBohnenspiel)) return false;
+        PackedBohnenspiel p = (PackedBohnenspiel) o;
+        return weisse == p.weisse && schwarz == p.schwarz;
+    }
+    
+    @Override
+    public int hashCode()
+    {
+        return Long.hashCode(weisse * 0x9E3779B97F4A7C15L ^ schwarz);
+    }
+}
@@ -0,0 +1,41 @@
+/**
+ * The common contract of every Bohnenspiel player, so that any engine can 
+ * play any other through ManageBohnenspielGame.
+ */
+public interface Player extends AutoCloseable
+{
+    /**
+     * Returns the player's name.
+     */
+    String getName();
+    
+    /**
+     * Returns the player's colour.
+     */
+    Farbe getFarbe();
+    
+    /**
+     * Returns a legal move in game, i.e. a number h in [1, 6]. 
+     * h must denote a non-empty house on this player's side of the board. 
+     * You can assume that at least one legal move is available. 
+     * DO NOT RETURN AN ILLEGAL MOVE - that's an automatic loss of game. 
+     */
+    int chooseMove(Bohnenspiel game);
+    
+    /**
+     * Returns what the player needs to run: one thread and no table, unless it says otherwise.
+     */
+    default EngineResources getResources()
+    {
+        return EngineResources.MINIMAL;
+    }
+    
+    /**
+     * Releases whatever the player holds beyond its own memory, such as search threads. 
+     * The player is not used again afterwards.
+     */
+    @Override
+    default void close()
+    {
+    }
+}
@@ -0,0 +1,166 @@
+/**
+ * Makes players of Bohnenspiel from short text specs, so that any two engines
+ * can be matched from the command line without changing code. A spec is a kind
+ * followed by its arguments, separated by colons:
+ *
+ *   alphabeta[:depth]            fixed-depth alpha-beta, 4 plies by default
+ *   pvs[:depth]                  fixed-depth principal variation search, 4 plies by default
+ *   timed:millis                 iterative-deepening alpha-beta
+ *   smp:threads:millis           lazy SMP alpha-beta
+ *   book:file[:depth]            fixed-depth alpha-beta with an opening book
+ *   eval:file[:depth]            fixed-depth alpha-beta with the evaluator weights in file
+ *   mcts[:playouts]              MCTS, 20000 playouts per move by default
+ *   mcts-tree:threads:millis     tree-parallel MCTS
+ *   mcts-root:threads:millis     root-parallel MCTS
+ *   builtin:STRATEGY             one of the BuiltinStrategy players
+ *
+ * New kinds are added with register.
+ *
+ * java PlayerRegistry spec1 spec2 [games]   plays spec1 against spec2 with both colours
+ */
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.function.*;
+
+public final class PlayerRegistry
+{
+    /**
+     * Makes a player of a colour from the arguments that follow the kind in a spec.
+     */
+    public interface Factory
+    {
+        Player create(String[] args, Farbe f) throws IOException;
+    }
+    
+    // the known kinds, in the order they were registered
+    private static final Map<String, Factory> kinds = new LinkedHashMap<>();
+    static
+    {
+        register("alphabeta", (a, f) -> {
+            BohnenspielPlayer p = new BohnenspielPlayer(f);
+            if (a.length > 0) p.setMaxDepth(Integer.parseInt(a[0]));
+            return p;
+        });
+        register("pvs", (a, f) -> {
+            BohnenspielPlayer p = new BohnenspielPlayer(f);
+            p.setAlgorithm(SearchAlgorithm.PVS);
+            if (a.length > 0) p.setMaxDepth(Integer.parseInt(a[0]));
+            return p;
+        });
+        register("timed", (a, f) -> new BohnenspielPlayer(f, Long.parseLong(arg(a, 0, "millis"))));
+        register("smp", (a, f) -> {
+            BohnenspielPlayer p = new BohnenspielPlayer(f, Long.parseLong(arg(a, 1, "millis")));
+            p.setThreads(Integer.parseInt(a[0]), false);
+            return p;
+        });
+        register("book", (a, f) -> {
+            BohnenspielPlayer p = new BohnenspielPlayer(f);
+            p.setOpeningBook(new OpeningBook(Paths.get(arg(a, 0, "file"))));
+            if (a.length > 1) p.setMaxDepth(Integer.parseInt(a[1]));
+            return p;
+        });
+        register("eval", (a, f) -> {
+            BohnenspielPlayer p = new BohnenspielPlayer(f);
+            p.setEvaluator(Evaluator.load(Paths.get(arg(a, 0, "file"))));
+            if (a.length > 1) p.setMaxDepth(Integer.parseInt(a[1]));
+            return p;
+        });
+        register("mcts", (a, f) ->
+            a.length > 0 ? new BohnenspielPlayerMCTS(f, 20, Long.parseLong(a[0]), 0) : new BohnenspielPlayerMCTS(f));
+        register("mcts-tree", (a, f) ->
+            new BohnenspielPlayerParallelMCTS(f, Integer.parseInt(a[0]), false, 20, Long.parseLong(arg(a, 1, "millis"))));
+        register("mcts-root", (a, f) ->
+            new BohnenspielPlayerParallelMCTS(f, Integer.parseInt(a[0]), true, 20, Long.parseLong(arg(a, 1, "millis"))));
+        register("builtin", (a, f) -> new BohnenspielPlayerBuiltin(BuiltinStrategy.valueOf(arg(a, 0, "strategy")), f));
+    }
+    
+    private PlayerRegistry()
+    {
+    }
+    
+    /**
+     * Returns argument i of a spec, or says which one is missing.
+     */
+    private static String arg(String[] a, int i, String what)
+    {
+        if (i >= a.length) throw new IllegalArgumentException("Missing " + what);
+        return a[i];
+    }
+    
+    /**
+     * Adds a kind of player, replacing any kind of the same name.
+     */
+    public static synchronized void register(String kind, Factory factory)
+    {
+        kinds.put(kind, Objects.requireNonNull(factory));
+    }
+    
+    /**
+     * Returns the names of the known kinds.
+     */
+    public static synchronized Set<String> getKinds()
+    {
+        return new LinkedHashSet<>(kinds.keySet());
+    }
+    
+    /**
+     * Makes a player of colour f from spec. The caller closes it when done with it.
+     */
+    public static Player create(String spec, Farbe f)
+    {
+        String[] parts = spec.split(":");
+        Factory factory;
+        synchronized (PlayerRegistry.class)
+        {
+            factory = kinds.get(parts[0]);
+        }
+        if (factory == null) throw new IllegalArgumentException("Unknown player: " + parts[0] + ", known: " + getKinds());
+        try
+        {
+            return factory.create(Arrays.copyOfRange(parts, 1, parts.length), f);
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException("Cannot make player " + spec, e);
+        }
+        catch (RuntimeException e)
+        {
+            throw new IllegalArgumentException("Bad player spec: " + spec, e);
+        }
+    }
+    
+    /**
+     * Returns a maker of players of either colour from spec.
+     */
+    public static Function<Farbe, Player> factory(String spec)
+    {
+        return f -> create(spec, f);
+    }
+    
+    /**
+     * Plays two specs against each other. Games run side by side only as far as
+     * the threads the engines declare leave processors free.
+     */
+    public static void main(String[] args)
+    {
+        if (args.length < 2)
+        {
+            System.out.println("usage: java PlayerRegistry spec1 spec2 [games]");
+            System.out.println("kinds: " + getKinds());
+            return;
+        }
+        int games = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        int needed = 1;
+        for (int i = 0; i < 2; i++)
+            try (Player p = create(args[i], Farbe.first()))
+            {
+                needed = Math.max(needed, p.getResources().getThreads());
+            }
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors() / needed);
+        Tournament t = new Tournament(games, threads, factory(args[0]), Collections.singletonList(factory(args[1])));
+        t.play();
+        t.report();
+        System.exit(0);
+    }
+}
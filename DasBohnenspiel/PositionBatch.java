@@ -0,0 +1,130 @@
+/**
+ * A block of positions stored as a structure of arrays: the WEISSE and SCHWARZ
+ * words of each position, exactly as PackedBohnenspiel packs them, side by side
+ * in two long arrays, and the two stores unpacked into two int arrays as the
+ * positions are added. A whole block is scored in one call of evaluate, whose
+ * loop reads only the int arrays and has no calls, no allocation and no branches,
+ * so that the JIT can unroll and vectorize it.
+ */
+import java.util.*;
+
+public final class PositionBatch
+{
+    // where the stores live in each word, as in PackedBohnenspiel
+    private static final int storeshift = 48;
+    // a store holding more than this many beans has won
+    private static final int half = Bohnenspiel.boardsize * Bohnenspiel.beansperhouse / 2;
+    
+    // the two words of each position
+    private final long[] weisse;
+    private final long[] schwarz;
+    // the stores of each position
+    private final int[] weisseStore;
+    private final int[] schwarzStore;
+    // the number of positions in the block
+    private int size;
+    
+    /**
+     * Constructs an empty block with room for capacity positions.
+     */
+    public PositionBatch(int capacity)
+    {
+        weisse  = new long[capacity];
+        schwarz = new long[capacity];
+        weisseStore  = new int[capacity];
+        schwarzStore = new int[capacity];
+    }
+    
+    /**
+     * Returns the number of positions in the block.
+     */
+    public int size()
+    {
+        return size;
+    }
+    
+    /**
+     * Returns the most positions the block can hold.
+     */
+    public int capacity()
+    {
+        return weisse.length;
+    }
+    
+    /**
+     * Empties the block.
+     */
+    public void clear()
+    {
+        size = 0;
+    }
+    
+    /**
+     * Adds the position with words w and s, as returned by PackedBohnenspiel.getWeisse and getSchwarz.
+     */
+    public void add(long w, long s)
+    {
+        if (size == weisse.length) throw new IllegalStateException("Batch is full: " + size);
+        weisse[size]  = w;
+        schwarz[size] = s;
+        weisseStore[size]  = (int) (w >>> storeshift) & 0xFF;
+        schwarzStore[size] = (int) (s >>> storeshift) & 0xFF;
+        size++;
+    }
+    
+    /**
+     * Adds p.
+     */
+    public void add(PackedBohnenspiel p)
+    {
+        add(p.getWeisse(), p.getSchwarz());
+    }
+    
+    /**
+     * Adds the position of game.
+     */
+    public void add(Bohnenspiel game)
+    {
+        add(new PackedBohnenspiel(game));
+    }
+    
+    /**
+     * Returns position k as a PackedBohnenspiel.
+     */
+    public PackedBohnenspiel get(int k)
+    {
+        Objects.checkIndex(k, size);
+        return new PackedBohnenspiel(weisse[k], schwarz[k]);
+    }
+    
+    /**
+     * Scores every position from player f's point of view, as BohnenspielSearch.evaluate
+     * does at the root without an Evaluator, into scores[0 .. size-1].
+     */
+    public void evaluate(Farbe f, int[] scores)
+    {
+        evaluate(f, scores, 0, size);
+    }
+    
+    /**
+     * Scores positions from .. to-1 from player f's point of view, as BohnenspielSearch.evaluate
+     * does at the root without an Evaluator, into scores[from .. to-1].
+     */
+    public void evaluate(Farbe f, int[] scores, int from, int to)
+    {
+        Objects.checkFromToIndex(from, to, size);
+        Objects.checkFromToIndex(from, to, scores.length);
+        // the player's stores and the opponent's, chosen once for the whole block
+        int[] mine   = f == Farbe.WEISSE ? weisseStore : schwarzStore;
+        int[] theirs = f == Farbe.WEISSE ? schwarzStore : weisseStore;
+        for (int k = from; k < to; k++)
+        {
+            int p = mine[k];
+            int o = theirs[k];
+            // all ones iff the player, or the opponent, has won
+            int won  = (half - p) >> 31;
+            int lost = (half - o) >> 31;
+            scores[k] = (p - o) & ~(won | lost) | Score.WIN & won | -Score.WIN & lost;
+        }
+    }
+}
@@ -0,0 +1,10 @@
+/**
+ * Enumerates the ways a TranspositionTable can decide whether a new entry 
+ * replaces the one already in its slot.
+ */
+public enum ReplacementPolicy
+{
+    ALWAYS,          // the newest entry always wins
+    DEPTH_PREFERRED, // keep the deeper entry, unless the slot holds the same position
+    AGED             // as DEPTH_PREFERRED, but entries from earlier searches are always replaced
+}
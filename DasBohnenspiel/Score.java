@@ -0,0 +1,84 @@
+/**
+ * The bounded score domain of the search. Heuristic scores are small, far 
+ * inside it; a won position scores WIN less the plies from the root to the 
+ * end of the game, so that quicker wins score higher, and a lost one the 
+ * negation. A win proven by the endgame database, whose length is not known, 
+ * scores PROVEN plus the final margin less the ply where it was proven. 
+ * Every score lies strictly between -INFINITY and INFINITY, which only 
+ * ever seed a search. 
+ */
+public final class Score
+{
+    /**
+     * A win at the root.
+     */
+    public static final int WIN      = 1000000;
+    /**
+     * A win by the endgame database at the root, before its margin is added.
+     */
+    public static final int PROVEN   = WIN / 2;
+    /**
+     * Greater than every score.
+     */
+    public static final int INFINITY = WIN + 1;
+    
+    // scores at least this far from 0 are wins or losses, and depend on their ply
+    private static final int DECISIVE = PROVEN - 2 * BohnenspielSearch.MAXPLY;
+    
+    private Score()
+    {
+    }
+    
+    /**
+     * Returns the score of a game that ends at ply with margin beans 
+     * for the player whose point of view it is.
+     */
+    public static int over(int margin, int ply)
+    {
+        return margin > 0 ? WIN - ply : margin < 0 ? -(WIN - ply) : 0;
+    }
+    
+    /**
+     * Returns the score of a position at ply that the endgame database 
+     * proves ends with margin beans for the player whose point of view it is.
+     */
+    public static int proven(int margin, int ply)
+    {
+        return margin > 0 ? PROVEN + margin - ply : margin < 0 ? -(PROVEN - margin - ply) : 0;
+    }
+    
+    /**
+     * Returns true iff s is a win or a loss rather than a heuristic score.
+     */
+    public static boolean isDecisive(int s)
+    {
+        return s >= DECISIVE || s <= -DECISIVE;
+    }
+    
+    /**
+     * Returns the number of plies to the end of the game for a score s 
+     * of a win or loss found by searching, or -1 for any other score.
+     */
+    public static int plies(int s)
+    {
+        int a = Math.abs(s);
+        return a > WIN - 2 * BohnenspielSearch.MAXPLY ? WIN - a : -1;
+    }
+    
+    /**
+     * Returns s, found at ply, as stored in the transposition table: 
+     * wins and losses count from the position rather than from the root.
+     */
+    public static int toTable(int s, int ply)
+    {
+        return s >= DECISIVE ? s + ply : s <= -DECISIVE ? s - ply : s;
+    }
+    
+    /**
+     * Returns s, read from the transposition table at ply, as a score from the root.
+     */
+    public static int fromTable(int s, int ply)
+    {
+        return s >= DECISIVE ? s - ply : s <= -DECISIVE ? s + ply : s;
+    }
+}
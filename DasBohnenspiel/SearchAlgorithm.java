@@ -0,0 +1,10 @@
+/**
+ * Enumerates the tree searches a BohnenspielPlayer can use. 
+ * Both share the transposition table format, with scores from the 
+ * point of view of the player to move, so either can follow the other.
+ */
+public enum SearchAlgorithm
+{
+    MINIMAX, // alpha-beta with a max branch and a min branch, full window at every node
+    PVS      // fail-soft negamax principal variation search with aspiration windows at the root
+}
@@ -0,0 +1,115 @@
+/**
+ * Adds up the statistics of searches, e.g. those of every player in a server, 
+ * and shows them as a snapshot or through JMX. 
+ * Nothing is recorded unless SearchStatistics.ENABLED.
+ */
+import java.lang.management.*;
+import javax.management.*;
+
+public class SearchMonitor implements SearchMonitorMXBean
+{
+    // everything recorded since the last reset
+    private final SearchStatistics total = new SearchStatistics();
+    
+    /**
+     * Adds the statistics of a search.
+     */
+    public synchronized void record(SearchStatistics s)
+    {
+        total.addSearches(s);
+    }
+    
+    /**
+     * Returns a copy of everything recorded since the last reset.
+     */
+    public synchronized SearchStatistics snapshot()
+    {
+        return total.copy();
+    }
+    
+    @Override
+    public synchronized void reset()
+    {
+        total.clear();
+    }
+    
+    /**
+     * Makes this monitor visible through JMX as Bohnenspiel:type=SearchMonitor,name=name.
+     */
+    public void register(String name) throws JMException
+    {
+        ObjectName o = new ObjectName("Bohnenspiel:type=SearchMonitor,name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, o);
+    }
+    
+    @Override
+    public long getSearches()
+    {
+        return snapshot().getSearches();
+    }
+    
+    @Override
+    public long getNodes()
+    {
+        return snapshot().getNodes();
+    }
+    
+    @Override
+    public double getNodesPerSecond()
+    {
+        return snapshot().getNodesPerSecond();
+    }
+    
+    @Override
+    public double getMillisPerSearch()
+    {
+        SearchStatistics s = snapshot();
+        return s.getSearches() == 0 ? 0 : s.getMillis() / s.getSearches();
+    }
+    
+    @Override
+    public double getCutoffRate()
+    {
+        return snapshot().getCutoffRate();
+    }
+    
+    @Override
+    public double getFirstMoveCutoffRate()
+    {
+        return snapshot().getFirstMoveCutoffRate();
+    }
+    
+    @Override
+    public double getTableHitRate()
+    {
+        return snapshot().getTableHitRate();
+    }
+    
+    @Override
+    public int getMaxDepth()
+    {
+        return snapshot().getMaxDepth();
+    }
+    
+    @Override
+    public int getMaxPly()
+    {
+        return snapshot().getMaxPly();
+    }
+    
+    /**
+     * Returns the branching factor of the deepest iteration recorded.
+     */
+    @Override
+    public double getBranchingFactor()
+    {
+        SearchStatistics s = snapshot();
+        return s.getBranchingFactor(s.getMaxDepth());
+    }
+    
+    @Override
+    public String getSummary()
+    {
+        return snapshot().toString();
+    }
+}
@@ -0,0 +1,30 @@
+/**
+ * What a SearchMonitor shows through JMX, e.g. in jconsole.
+ * Every figure is over all the searches recorded since the last reset.
+ */
+public interface SearchMonitorMXBean
+{
+    long getSearches();
+    
+    long getNodes();
+    
+    double getNodesPerSecond();
+    
+    double getMillisPerSearch();
+    
+    double getCutoffRate();
+    
+    double getFirstMoveCutoffRate();
+    
+    double getTableHitRate();
+    
+    int getMaxDepth();
+    
+    int getMaxPly();
+    
+    double getBranchingFactor();
+    
+    String getSummary();
+    
+    void reset();
+}
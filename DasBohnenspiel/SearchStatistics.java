@@ -0,0 +1,287 @@
+/**
+ * Counts what happened during one or more searches: the nodes that were
+ * visited and expanded, which of their moves caused a beta cutoff, how often
+ * the transposition table knew the position, how deep the search went, and
+ * the nodes and time of each iteration.
+ *
+ * Counting is off unless the JVM is started with -Dbohnenspiel.statistics=true.
+ * The search only counts under "if (SearchStatistics.ENABLED)", a constant the
+ * JIT folds away, so that a search that does not count pays nothing for it.
+ */
+import java.util.*;
+
+public class SearchStatistics
+{
+    /**
+     * Whether searches count anything at all.
+     */
+    public static final boolean ENABLED = Boolean.getBoolean("bohnenspiel.statistics");
+    
+    // the number of searches counted, e.g. calls of chooseMove
+    private long searches;
+    // the number of nodes visited
+    private long nodes;
+    // the number of nodes whose moves were searched
+    private long expanded;
+    // the number of cutoffs caused by the first, second, ... move searched
+    private final long[] cutoffs = new long[Bohnenspiel.numberofhouses];
+    // the number of transposition table probes, and of those that found the position
+    private long probes;
+    private long hits;
+    // the largest ply visited
+    private int maxPly;
+    // the nodes and nanoseconds of the iteration to each depth
+    private final long[] iterationNodes = new long[BohnenspielSearch.MAXPLY + 1];
+    private final long[] iterationNanos = new long[BohnenspielSearch.MAXPLY + 1];
+    // the wall-clock time of the searches counted, in nanoseconds
+    private long elapsed;
+    
+    /**
+     * Forgets everything counted so far.
+     */
+    public void clear()
+    {
+        searches = 0;
+        nodes = 0;
+        expanded = 0;
+        Arrays.fill(cutoffs, 0);
+        probes = 0;
+        hits = 0;
+        maxPly = 0;
+        Arrays.fill(iterationNodes, 0);
+        Arrays.fill(iterationNanos, 0);
+        elapsed = 0;
+    }
+    
+    /**
+     * Counts a node visited at ply.
+     */
+    public void node(int ply)
+    {
+        nodes++;
+        if (ply > maxPly) maxPly = ply;
+    }
+    
+    /**
+     * Counts a node whose moves are about to be searched.
+     */
+    public void expand()
+    {
+        expanded++;
+    }
+    
+    /**
+     * Counts a cutoff by the move searched at position index, from 0.
+     */
+    public void cutoff(int index)
+    {
+        cutoffs[index]++;
+    }
+    
+    /**
+     * Counts a probe of the transposition table, which found the position iff hit.
+     */
+    public void probe(boolean hit)
+    {
+        probes++;
+        if (hit) hits++;
+    }
+    
+    /**
+     * Counts a completed iteration to depth that visited n nodes in nanos nanoseconds.
+     */
+    public void iteration(int depth, long n, long nanos)
+    {
+        iterationNodes[depth] += n;
+        iterationNanos[depth] += nanos;
+    }
+    
+    /**
+     * Counts a whole search that took nanos nanoseconds of wall-clock time.
+     */
+    public void search(long nanos)
+    {
+        searches++;
+        elapsed += nanos;
+    }
+    
+    /**
+     * Adds the counts of s to these. The searches and time of s are not added,
+     * as the searches of one player's threads run side by side.
+     */
+    public void add(SearchStatistics s)
+    {
+        nodes += s.nodes;
+        expanded += s.expanded;
+        for (int k = 0; k < cutoffs.length; k++) cutoffs[k] += s.cutoffs[k];
+        probes += s.probes;
+        hits += s.hits;
+        maxPly = Math.max(maxPly, s.maxPly);
+        for (int d = 0; d < iterationNodes.length; d++)
+        {
+            iterationNodes[d] += s.iterationNodes[d];
+            iterationNanos[d] += s.iterationNanos[d];
+        }
+    }
+    
+    /**
+     * Adds all the counts of s to these, including its searches and time.
+     */
+    public void addSearches(SearchStatistics s)
+    {
+        add(s);
+        searches += s.searches;
+        elapsed += s.elapsed;
+    }
+    
+    /**
+     * Returns a copy of these counts.
+     */
+    public SearchStatistics copy()
+    {
+        SearchStatistics s = new SearchStatistics();
+        s.addSearches(this);
+        return s;
+    }
+    
+    /**
+     * Returns the number of searches counted.
+     */
+    public long getSearches()
+    {
+        return searches;
+    }
+    
+    /**
+     * Returns the number of visited nodes.
+     */
+    public long getNodes()
+    {
+        return nodes;
+    }
+    
+    /**
+     * Returns the number of expanded nodes.
+     */
+    public long getExpanded()
+    {
+        return expanded;
+    }
+    
+    /**
+     * Returns the number of cutoffs caused by the move searched at position index.
+     */
+    public long getCutoffs(int index)
+    {
+        return cutoffs[index];
+    }
+    
+    /**
+     * Returns the total number of cutoffs.
+     */
+    public long getCutoffs()
+    {
+        long c = 0;
+        for (long k : cutoffs) c += k;
+        return c;
+    }
+    
+    /**
+     * Returns the percentage of cutoffs caused by the first move searched.
+     */
+    public double getFirstMoveCutoffRate()
+    {
+        long c = getCutoffs();
+        return c == 0 ? 0 : 100.0 * cutoffs[0] / c;
+    }
+    
+    /**
+     * Returns the percentage of expanded nodes that were cut off.
+     */
+    public double getCutoffRate()
+    {
+        return expanded == 0 ? 0 : 100.0 * getCutoffs() / expanded;
+    }
+    
+    /**
+     * Returns the percentage of transposition table probes that found the position.
+     */
+    public double getTableHitRate()
+    {
+        return probes == 0 ? 0 : 100.0 * hits / probes;
+    }
+    
+    /**
+     * Returns the largest ply visited.
+     */
+    public int getMaxPly()
+    {
+        return maxPly;
+    }
+    
+    /**
+     * Returns the deepest iteration counted, or 0 if none.
+     */
+    public int getMaxDepth()
+    {
+        int d = iterationNodes.length - 1;
+        while (d > 0 && iterationNodes[d] == 0) d--;
+        return d;
+    }
+    
+    /**
+     * Returns the nodes visited by iterations to depth.
+     */
+    public long getIterationNodes(int depth)
+    {
+        return iterationNodes[depth];
+    }
+    
+    /**
+     * Returns the time taken by iterations to depth, in milliseconds.
+     */
+    public double getIterationMillis(int depth)
+    {
+        return iterationNanos[depth] / 1e6;
+    }
+    
+    /**
+     * Returns the effective branching factor at depth: the nodes of the iteration
+     * to depth over those of the iteration before, or 0 if either is unknown.
+     */
+    public double getBranchingFactor(int depth)
+    {
+        if (depth < 2 || iterationNodes[depth - 1] == 0) return 0;
+        return (double) iterationNodes[depth] / iterationNodes[depth - 1];
+    }
+    
+    /**
+     * Returns the wall-clock time of the searches counted, in milliseconds.
+     */
+    public double getMillis()
+    {
+        return elapsed / 1e6;
+    }
+    
+    /**
+     * Returns the nodes visited per second of wall-clock time.
+     */
+    public double getNodesPerSecond()
+    {
+        return elapsed == 0 ? 0 : nodes * 1e9 / elapsed;
+    }
+    
+    @Override
+    public String toString()
+    {
+        StringBuilder s = new StringBuilder(String.format(
+            "%d nodes in %.1f ms (%.0f nodes/sec), %d expanded, %.1f%% cut off, %.1f%% of cutoffs by the first move, " +
+            "%.1f%% table hits, max ply %d",
+            nodes, getMillis(), getNodesPerSecond(), expanded, getCutoffRate(), getFirstMoveCutoffRate(),
+            getTableHitRate(), maxPly));
+        for (int d = 1; d <= getMaxDepth(); d++)
+            s.append(String.format("%n  depth %2d: %10d nodes %8.1f ms  branching %.2f",
+                                   d, iterationNodes[d], getIterationMillis(d), getBranchingFactor(d)));
+        return s.toString();
+    }
+}
@@ -0,0 +1,315 @@
+/**
+ * Generates training data for evaluators by self-play. Many games run side by
+ * side, each between two searches of the same depth. The first few plies of a
+ * game are random; after that every root move is searched and one is drawn with
+ * probability proportional to exp(score / temperature), so that the games
+ * differ, and a temperature of 0 always plays the best move.
+ *
+ * Every position played gets a sample: the position, the best search score
+ * and the final outcome, both for the player to move. A finished game's samples
+ * go as one batch into a bounded queue, and writer threads, one per shard, take
+ * batches from it and append them to their own files. When the writers fall
+ * behind the queue fills and the games wait, so memory stays bounded.
+ *
+ * A shard file is a header of a magic number and a version, then samples of
+ *
+ *   long    the WEISSE word of the position, as PackedBohnenspiel.getWeisse
+ *   long    the SCHWARZ word, as PackedBohnenspiel.getSchwarz
+ *   int     the search score for the player to move
+ *   byte    the points of the player to move: 2 for a win, 1 for a draw, 0 for a loss
+ *
+ * java SelfPlayGenerator games depth dir [shards] [temperature] [randomplies]
+ */
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+public class SelfPlayGenerator
+{
+    public static final int magic   = 0x42535044; // "BSPD"
+    public static final int version = 1;
+    // the bytes of one sample
+    public static final int samplesize = 21;
+    
+    // the size of each worker's transposition table
+    private static final int tablebits = 18;
+    // the batches waiting for a writer, per writer
+    private static final int queueperwriter = 64;
+    
+    // the depth of every search, the temperature of move selection and the random plies per game
+    private final int depth;
+    private final double temperature;
+    private final int randomPlies;
+    // the shard files
+    private final Path[] shards;
+    // the batches waiting to be written, and the samples written so far
+    private final BlockingQueue<Batch> queue;
+    private final AtomicLong samples = new AtomicLong();
+    // tells a writer there will be no more batches
+    private static final Batch last = new Batch();
+    
+    /**
+     * The samples of one game.
+     */
+    private static final class Batch
+    {
+        long[] weisse  = new long[64];
+        long[] schwarz = new long[64];
+        int[]  score   = new int[64];
+        // the colour to move, and once the game is over the points of that player
+        byte[] outcome = new byte[64];
+        int    size;
+        
+        void add(PackedBohnenspiel p, int s)
+        {
+            if (size == weisse.length)
+            {
+                weisse  = Arrays.copyOf(weisse,  2 * size);
+                schwarz = Arrays.copyOf(schwarz, 2 * size);
+                score   = Arrays.copyOf(score,   2 * size);
+                outcome = Arrays.copyOf(outcome, 2 * size);
+            }
+            weisse[size]  = p.getWeisse();
+            schwarz[size] = p.getSchwarz();
+            score[size]   = s;
+            outcome[size] = (byte) p.getTurn().ordinal();
+            size++;
+        }
+    }
+    
+    /**
+     * Constructs a generator searching to depth d, choosing moves at temperature t
+     * after r random plies, and writing to n shards in dir.
+     */
+    public SelfPlayGenerator(int d, double t, int r, Path dir, int n) throws IOException
+    {
+        if (d < 1 || d > BohnenspielSearch.MAXPLY) throw new IllegalArgumentException("Bad depth: " + d);
+        if (n < 1) throw new IllegalArgumentException("Bad shard count: " + n);
+        if (t < 0) throw new IllegalArgumentException("Bad temperature: " + t);
+        depth = d;
+        temperature = t;
+        randomPlies = r;
+        Files.createDirectories(dir);
+        shards = new Path[n];
+        for (int k = 0; k < n; k++) shards[k] = dir.resolve(String.format("selfplay-%03d.bin", k));
+        queue = new ArrayBlockingQueue<>(n * queueperwriter);
+    }
+    
+    /**
+     * Plays games on threads threads and writes their samples, returning when all are written.
+     * Game g uses random numbers seeded by g and starts from an empty table and fresh
+     * move ordering, so it is the same game in every run, whichever thread plays it;
+     * only the order of the samples in the shards differs.
+     * If a player or a writer fails the others are stopped and the failure is thrown.
+     */
+    public void generate(int games, int threads) throws IOException, InterruptedException
+    {
+        // players and writers report to one queue, so that whichever fails first is seen at once
+        BlockingQueue<Future<Void>> done = new LinkedBlockingQueue<>();
+        ExecutorService writers = Executors.newFixedThreadPool(shards.length);
+        CompletionService<Void> written = new ExecutorCompletionService<>(writers, done);
+        for (Path shard : shards) written.submit(() -> write(shard));
+        ExecutorService players = Executors.newFixedThreadPool(threads);
+        CompletionService<Void> played = new ExecutorCompletionService<>(players, done);
+        AtomicInteger next = new AtomicInteger();
+        Set<Future<Void>> playing = new HashSet<>();
+        for (int k = 0; k < threads; k++)
+            playing.add(played.submit(() -> {
+                TranspositionTable table = new TranspositionTable(tablebits, ReplacementPolicy.AGED);
+                for (int g = next.getAndIncrement(); g < games; g = next.getAndIncrement())
+                {
+                    table.clear();
+                    queue.put(play(searches(table), g));
+                }
+                return null;
+            }));
+        try
+        {
+            int pending = threads + shards.length;
+            int stops = 0;
+            while (pending > 0)
+            {
+                Future<Void> f = done.poll(100, TimeUnit.MILLISECONDS);
+                if (f != null)
+                {
+                    f.get();
+                    playing.remove(f);
+                    pending--;
+                }
+                // once the games are over, tell each writer without waiting on a full queue
+                while (playing.isEmpty() && stops < shards.length && queue.offer(last)) stops++;
+            }
+        }
+        catch (ExecutionException e)
+        {
+            throw new IOException("Self-play failed", e.getCause());
+        }
+        finally
+        {
+            players.shutdownNow();
+            writers.shutdownNow();
+        }
+    }
+    
+    /**
+     * Returns the number of samples written so far.
+     */
+    public long getSamples()
+    {
+        return samples.get();
+    }
+    
+    /**
+     * Returns a search for each colour, sharing table.
+     */
+    private static BohnenspielSearch[] searches(TranspositionTable table)
+    {
+        BohnenspielSearch[] searches = new BohnenspielSearch[Farbe.values().length];
+        for (Farbe f : Farbe.values()) searches[f.ordinal()] = new BohnenspielSearch(f, table, OrderingStrategy.HISTORY);
+        return searches;
+    }
+    
+    /**
+     * Plays game number g and returns its samples with their outcomes.
+     */
+    private Batch play(BohnenspielSearch[] searches, int g)
+    {
+        Random r = new Random(g);
+        Batch batch = new Batch();
+        Bohnenspiel game = new Bohnenspiel();
+        AtomicBoolean stop = new AtomicBoolean();
+        int[] scores = new int[Bohnenspiel.numberofhouses];
+        for (int ply = 0; !game.isOver(); ply++)
+        {
+            Farbe turn = game.getTurn();
+            int legal = game.legalMoves();
+            BohnenspielSearch search = searches[turn.ordinal()];
+            search.getTable().newSearch();
+            search.start(game.copyGame(turn), stop);
+            int best = -Score.INFINITY;
+            for (int moves = legal; moves != 0; moves &= moves - 1)
+            {
+                int h = Integer.numberOfTrailingZeros(moves);
+                scores[h] = search.searchMove(h + 1, depth);
+                best = Math.max(best, scores[h]);
+            }
+            batch.add(new PackedBohnenspiel(game), best);
+            game.move(ply < randomPlies ? random(legal, r) : choose(legal, scores, best, r));
+        }
+        int margin = game.getStore(0) - game.getStore(1);
+        int weissePoints = Integer.signum(margin) + 1;
+        for (int k = 0; k < batch.size; k++) batch.outcome[k] = (byte) (batch.outcome[k] == 0 ? weissePoints : 2 - weissePoints);
+        return batch;
+    }
+    
+    /**
+     * Returns a legal move in legal drawn uniformly.
+     */
+    private static int random(int legal, Random r)
+    {
+        int h;
+        do h = r.nextInt(Bohnenspiel.numberofhouses); while ((legal >>> h & 1) == 0);
+        return h + 1;
+    }
+    
+    /**
+     * Returns a legal move in legal drawn with probability proportional to
+     * exp((score - best) / temperature), or the first best move at temperature 0.
+     */
+    private int choose(int legal, int[] scores, int best, Random r)
+    {
+        double[] weights = new double[Bohnenspiel.numberofhouses];
+        double total = 0;
+        for (int moves = legal; moves != 0; moves &= moves - 1)
+        {
+            int h = Integer.numberOfTrailingZeros(moves);
+            if (temperature == 0) weights[h] = scores[h] == best ? 1 : 0;
+            else                  weights[h] = Math.exp((scores[h] - (double) best) / temperature);
+            total += weights[h];
+            if (temperature == 0 && weights[h] > 0) return h + 1;
+        }
+        double x = r.nextDouble() * total;
+        int h = 0;
+        for (int moves = legal; moves != 0; moves &= moves - 1)
+        {
+            h = Integer.numberOfTrailingZeros(moves);
+            x -= weights[h];
+            if (x < 0) break;
+        }
+        return h + 1;
+    }
+    
+    /**
+     * Takes batches from the queue and appends them to shard until told to stop.
+     */
+    private Void write(Path shard) throws IOException, InterruptedException
+    {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(shard), 1 << 16)))
+        {
+            out.writeInt(magic);
+            out.writeInt(version);
+            for (Batch b = queue.take(); b != last; b = queue.take())
+            {
+                for (int k = 0; k < b.size; k++)
+                {
+                    out.writeLong(b.weisse[k]);
+                    out.writeLong(b.schwarz[k]);
+                    out.writeInt(b.score[k]);
+                    out.writeByte(b.outcome[k]);
+                }
+                samples.addAndGet(b.size);
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Passes every sample in shard to action: the position, the search score
+     * and the points of the player to move. Reads in constant memory.
+     */
+    public static void read(Path shard, ObjIntIntConsumer action) throws IOException
+    {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(shard), 1 << 16)))
+        {
+            if (in.readInt() != magic || in.readInt() != version) throw new IOException("Not a self-play shard: " + shard);
+            long n = (Files.size(shard) - 8) / samplesize;
+            PackedBohnenspiel p = new PackedBohnenspiel();
+            for (long k = 0; k < n; k++)
+            {
+                p.set(in.readLong(), in.readLong());
+                int score = in.readInt();
+                action.accept(p, score, in.readByte());
+            }
+        }
+    }
+    
+    /**
+     * Takes a position with two numbers, as read gives its samples.
+     */
+    public interface ObjIntIntConsumer
+    {
+        void accept(PackedBohnenspiel p, int score, int points);
+    }
+    
+    public static void main(String[] args) throws Exception
+    {
+        if (args.length < 3)
+        {
+            System.out.println("usage: java SelfPlayGenerator games depth dir [shards] [temperature] [randomplies]");
+            return;
+        }
+        int games     = Integer.parseInt(args[0]);
+        int depth     = Integer.parseInt(args[1]);
+        int n         = args.length > 3 ? Integer.parseInt(args[3]) : 4;
+        double t      = args.length > 4 ? Double.parseDouble(args[4]) : 1.0;
+        int random    = args.length > 5 ? Integer.parseInt(args[5]) : 4;
+        SelfPlayGenerator s = new SelfPlayGenerator(depth, t, random, Paths.get(args[2]), n);
+        long start = System.nanoTime();
+        s.generate(games, Runtime.getRuntime().availableProcessors());
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.println(String.format("%d games, %d positions in %.1f s: %.0f positions/hour",
+                                         games, s.getSamples(), seconds, s.getSamples() / seconds * 3600));
+    }
+}
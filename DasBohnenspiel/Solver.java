@@ -0,0 +1,419 @@
+/**
+ * Proves the exact value of a Bohnenspiel position: the final store margin for
+ * the player to move when both sides play perfectly.
+ *
+ * The value is pinned down as in MTD(f), by a sequence of null-window tests
+ * "is the value at least g?", each of which bisects the range still possible.
+ * A test either proves its answer or, when it reaches its depth limit, says it
+ * does not know; then the limit goes up and the tests go on from the range
+ * already proven. A position counts as decided as soon as the beans left on the
+ * board cannot change the answer, so no heuristic is ever involved.
+ *
+ * Proven bounds do not depend on the depth they were found at, so the table
+ * keeps them for good, and a checkpoint of the table and the range lets a long
+ * solve be stopped and resumed later without losing them. The table also keeps
+ * the move that last proved a bound, which is tried first, and the deepest test
+ * that did not know, so that a transposition need not repeat it.
+ *
+ * java Solver b0,...,b11 s0,s1 TURN [-table bits] [-egdb file] [-checkpoint file [seconds]] [-resume]
+ */
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+public class Solver
+{
+    public static final int magic   = 0x534F4C56; // "SOLV"
+    public static final int version = 1;
+    
+    // the test results
+    private static final int UNKNOWN = 0;
+    private static final int AT_LEAST = 1;
+    private static final int BELOW = 2;
+    // all the beans, and the longest line a test follows
+    private static final int beans = Bohnenspiel.boardsize * Bohnenspiel.beansperhouse;
+    public static final int MAXDEPTH = 255;
+    
+    // the table: a key per slot, and what is known of its position packed into a word by pack;
+    // a 0 word is an empty slot
+    private final long[] keys;
+    private final long[] entries;
+    private static final long EMPTY = pack(-beans, beans, 0, 0, 0);
+    private final int mask;
+    // exact values of positions with few beans left, or null
+    private EndgameDatabase endgame;
+    
+    // where and how often to checkpoint, or null
+    private Path checkpoint;
+    private long interval;
+    private long lastCheckpoint;
+    
+    // the position being solved, which the tests change and restore as they go,
+    // and its board, stores and turn as a checkpoint saves them
+    private Bohnenspiel root;
+    private int[] rootBoard;
+    private int[] rootStores;
+    private Farbe rootTurn;
+    // the range of its value proven so far and the current depth limit
+    private int lo, hi;
+    private int depth;
+    // nodes visited, and when the solve started
+    private long nodes;
+    private long start;
+    
+    /**
+     * Constructs a solver with a table of 2^bits positions.
+     */
+    public Solver(int bits)
+    {
+        if (bits < 10 || bits > 30) throw new IllegalArgumentException("Bad table size: 2^" + bits);
+        keys   = new long[1 << bits];
+        entries = new long[1 << bits];
+        mask   = (1 << bits) - 1;
+    }
+    
+    /**
+     * Sets the endgame database to probe, or null for none.
+     */
+    public void setEndgameDatabase(EndgameDatabase db)
+    {
+        endgame = db;
+    }
+    
+    /**
+     * Writes a checkpoint to file at most every seconds seconds during a solve, or never if file is null.
+     */
+    public void setCheckpoint(Path file, long seconds)
+    {
+        checkpoint = file;
+        interval = seconds * 1000000000L;
+    }
+    
+    /**
+     * Returns the exact final margin of game for the player to move.
+     * The game must not be over.
+     */
+    public int solve(Bohnenspiel game) throws IOException
+    {
+        if (game.isOver()) throw new IllegalArgumentException("The game is over");
+        setRoot(game.getBoard(), game.getStores(), game.getTurn());
+        int me = root.getTurn().ordinal();
+        int margin = root.getStore(me) - root.getStore(1 - me);
+        int left = beans - root.getStore(0) - root.getStore(1);
+        lo = margin - left;
+        hi = margin + left;
+        depth = 1;
+        return resume();
+    }
+    
+    /**
+     * Makes the position with board b, stores ss and f to move the one being solved.
+     */
+    private void setRoot(int[] b, int[] ss, Farbe f)
+    {
+        root = new Bohnenspiel(b, ss, f);
+        rootBoard = root.getBoard();
+        rootStores = root.getStores();
+        rootTurn = f;
+    }
+    
+    /**
+     * Goes on with the solve set up by solve or by load, returning the value.
+     */
+    public int resume() throws IOException
+    {
+        start = System.nanoTime();
+        lastCheckpoint = start;
+        nodes = 0;
+        long key = root.getHash();
+        lo = Math.max(lo, lower(probe(key)));
+        hi = Math.min(hi, upper(probe(key)));
+        for (; lo < hi && depth <= MAXDEPTH; depth++)
+        {
+            // bisect until a test does not know
+            while (lo < hi)
+            {
+                int g = Math.floorDiv(lo + hi + 1, 2);
+                int r = test(root, depth, g);
+                if (r == AT_LEAST)   lo = g;
+                else if (r == BELOW) hi = g - 1;
+                else break;
+            }
+            report();
+        }
+        if (lo < hi) throw new IllegalStateException("No proof within " + MAXDEPTH + " plies: value in [" + lo + ", " + hi + "]");
+        if (checkpoint != null) save(checkpoint);
+        return lo;
+    }
+    
+    /**
+     * Returns a move of game that keeps its value, once solve or resume has proven it to be value.
+     */
+    public int bestMove(Bohnenspiel game, int value) throws IOException
+    {
+        Bohnenspiel g = game.copyGame(game.getTurn());
+        for (int moves = g.legalMoves(); moves != 0; moves &= moves - 1)
+        {
+            int h = Integer.numberOfTrailingZeros(moves) + 1;
+            g.makeMove(h);
+            // the move keeps the value iff the opponent's value after it is below 1 - value
+            boolean best = false;
+            for (int d = 1; d <= MAXDEPTH; d++)
+            {
+                int r = test(g, d, 1 - value);
+                if (r != UNKNOWN)
+                {
+                    best = r == BELOW;
+                    break;
+                }
+            }
+            g.unmakeMove();
+            if (best) return h;
+        }
+        throw new IllegalStateException("No move keeps the value " + value);
+    }
+    
+    /**
+     * Tests whether the final margin of game for the player to move is at least g,
+     * looking at most depth plies ahead: returns AT_LEAST, BELOW or UNKNOWN.
+     */
+    private int test(Bohnenspiel game, int depth, int g) throws IOException
+    {
+        if ((++nodes & 0xFFFF) == 0 && checkpoint != null && System.nanoTime() - lastCheckpoint > interval)
+        {
+            save(checkpoint);
+            lastCheckpoint = System.nanoTime();
+        }
+        int me = game.getTurn().ordinal();
+        int margin = game.getStore(me) - game.getStore(1 - me);
+        if (game.isOver()) return margin >= g ? AT_LEAST : BELOW;
+        // the beans left can move the margin by at most their number either way
+        int left = beans - game.getStore(0) - game.getStore(1);
+        if (margin - left >= g) return AT_LEAST;
+        if (margin + left <  g) return BELOW;
+        if (endgame != null)
+        {
+            int m = endgame.probe(game);
+            if (m != EndgameDatabase.UNKNOWN)
+            {
+                m = me == 0 ? m : -m;
+                return m >= g ? AT_LEAST : BELOW;
+            }
+        }
+        long key = game.getHash();
+        long e = probe(key);
+        if (lower(e) >= g) return AT_LEAST;
+        if (upper(e) <  g) return BELOW;
+        if (depth == 0 || depth <= unknown(e) && gamma(e) == g) return UNKNOWN;
+    
+        // the move of the table first, then captures, then the rest
+        int[] order = new int[Bohnenspiel.numberofhouses];
+        int n = 0;
+        int legal = game.legalMoves();
+        int first = move(e);
+        if (first != 0 && (legal >>> first - 1 & 1) != 0) order[n++] = first;
+        for (int moves = legal; moves != 0; moves &= moves - 1)
+        {
+            int h = Integer.numberOfTrailingZeros(moves) + 1;
+            if (h != first && game.captures(h) != 0) order[n++] = h;
+        }
+        for (int moves = legal; moves != 0; moves &= moves - 1)
+        {
+            int h = Integer.numberOfTrailingZeros(moves) + 1;
+            if (h != first && game.captures(h) == 0) order[n++] = h;
+        }
+    
+        // at least g if some move leaves the opponent below 1 - g, below g if every move leaves them at least 1 - g
+        int result = BELOW;
+        int best = first;
+        for (int k = 0; k < n; k++)
+        {
+            game.makeMove(order[k]);
+            int r = test(game, depth - 1, 1 - g);
+            game.unmakeMove();
+            if (r == BELOW)
+            {
+                result = AT_LEAST;
+                best = order[k];
+                break;
+            }
+            if (r == UNKNOWN) result = UNKNOWN;
+        }
+        if (result == AT_LEAST) store(key, pack(Math.max(lower(e), g), upper(e), unknown(e), gamma(e), best));
+        if (result == BELOW)    store(key, pack(lower(e), Math.min(upper(e), g - 1), unknown(e), gamma(e), best));
+        if (result == UNKNOWN)  store(key, pack(lower(e), upper(e), depth, g, best));
+        return result;
+    }
+    
+    /**
+     * Returns the entry of the position with key, or EMPTY if it is not in the table.
+     */
+    private long probe(long key)
+    {
+        int slot = (int) key & mask;
+        return keys[slot] == key && entries[slot] != 0 ? entries[slot] : EMPTY;
+    }
+    
+    /**
+     * Stores entry e for the position with key, replacing whatever was in its slot.
+     */
+    private void store(long key, long e)
+    {
+        int slot = (int) key & mask;
+        keys[slot] = key;
+        entries[slot] = e;
+    }
+    
+    /**
+     * Packs the proven bounds lo and hi, the depth of the deepest test that did not know
+     * whether the value is at least g, and the move that last proved a bound, or 0.
+     */
+    private static long pack(int lo, int hi, int unknown, int g, int move)
+    {
+        return (lo + beans) | (hi + beans) << 8 | (long) unknown << 16 | (long) (g + beans) << 24 | (long) move << 32;
+    }
+    
+    private static int lower(long e)
+    {
+        return (int) (e & 0xFF) - beans;
+    }
+    
+    private static int upper(long e)
+    {
+        return (int) (e >>> 8 & 0xFF) - beans;
+    }
+    
+    private static int unknown(long e)
+    {
+        return (int) (e >>> 16 & 0xFF);
+    }
+    
+    private static int gamma(long e)
+    {
+        return (int) (e >>> 24 & 0xFF) - beans;
+    }
+    
+    private static int move(long e)
+    {
+        return (int) (e >>> 32 & 0x7);
+    }
+    
+    /**
+     * Prints the progress of the solve.
+     */
+    private void report()
+    {
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.println(String.format("depth %3d: value in [%d, %d], %d nodes in %.1f s (%.0f nodes/sec)",
+                                         depth, lo, hi, nodes, seconds, seconds == 0 ? 0 : nodes / seconds));
+    }
+    
+    /**
+     * Writes the position, the range proven, the depth and the table to file,
+     * through a temporary file so that a crash never leaves half a checkpoint.
+     */
+    public void save(Path file) throws IOException
+    {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16)))
+        {
+            out.writeInt(magic);
+            out.writeInt(version);
+            for (int h : rootBoard) out.writeByte(h);
+            for (int s : rootStores) out.writeByte(s);
+            out.writeByte(rootTurn.ordinal());
+            out.writeInt(lo);
+            out.writeInt(hi);
+            out.writeInt(depth);
+            out.writeInt(keys.length);
+            for (int k = 0; k < keys.length; k++)
+                if (entries[k] != 0)
+                {
+                    out.writeInt(k);
+                    out.writeLong(keys[k]);
+                    out.writeLong(entries[k]);
+                }
+            out.writeInt(-1);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    
+    /**
+     * Reads a checkpoint from file, to be gone on with by resume, and returns its position.
+     * The table must be the same size as the one checkpointed.
+     */
+    public Bohnenspiel load(Path file) throws IOException
+    {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16)))
+        {
+            if (in.readInt() != magic || in.readInt() != version) throw new IOException("Not a solver checkpoint: " + file);
+            int[] board = new int[Bohnenspiel.boardsize];
+            int[] stores = new int[Bohnenspiel.numberofstores];
+            for (int k = 0; k < board.length; k++) board[k] = in.readUnsignedByte();
+            for (int k = 0; k < stores.length; k++) stores[k] = in.readUnsignedByte();
+            setRoot(board, stores, Farbe.values()[in.readUnsignedByte()]);
+            lo = in.readInt();
+            hi = in.readInt();
+            depth = in.readInt();
+            if (in.readInt() != keys.length) throw new IOException("Checkpoint has a different table size: " + file);
+            for (int k = in.readInt(); k >= 0; k = in.readInt())
+            {
+                keys[k] = in.readLong();
+                entries[k] = in.readLong();
+            }
+        }
+        return new Bohnenspiel(rootBoard, rootStores, rootTurn);
+    }
+    
+    /**
+     * Parses a list of numbers separated by commas.
+     */
+    private static int[] numbers(String s)
+    {
+        String[] parts = s.split(",");
+        int[] xs = new int[parts.length];
+        for (int k = 0; k < parts.length; k++) xs[k] = Integer.parseInt(parts[k]);
+        return xs;
+    }
+    
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length < 3)
+        {
+            System.out.println("usage: java Solver b0,...,b11 s0,s1 TURN [-table bits] [-egdb file] [-checkpoint file [seconds]] [-resume]");
+            return;
+        }
+        Bohnenspiel game = new Bohnenspiel(numbers(args[0]), numbers(args[1]), Farbe.valueOf(args[2]));
+        int bits = 24;
+        EndgameDatabase db = null;
+        Path file = null;
+        long seconds = 60;
+        boolean resume = false;
+        for (int k = 3; k < args.length; k++)
+            if      (args[k].equals("-table"))  bits = Integer.parseInt(args[++k]);
+            else if (args[k].equals("-egdb"))   db = new EndgameDatabase(Paths.get(args[++k]));
+            else if (args[k].equals("-resume")) resume = true;
+            else if (args[k].equals("-checkpoint"))
+            {
+                file = Paths.get(args[++k]);
+                if (k + 1 < args.length && !args[k + 1].startsWith("-")) seconds = Long.parseLong(args[++k]);
+            }
+            else throw new IllegalArgumentException("Unknown option: " + args[k]);
+    
+        Solver s = new Solver(bits);
+        s.setEndgameDatabase(db);
+        s.setCheckpoint(file, seconds);
+        int value;
+        if (resume)
+        {
+            if (file == null || !Files.exists(file)) throw new IllegalArgumentException("Nothing to resume");
+            Bohnenspiel saved = s.load(file);
+            if (!Arrays.equals(saved.getBoard(), game.getBoard()) || !Arrays.equals(saved.getStores(), game.getStores())
+                || saved.getTurn() != game.getTurn())
+                throw new IllegalArgumentException("The checkpoint is of another position");
+            value = s.resume();
+        }
+        else value = s.solve(game);
+        System.out.println(String.format("value %+d for %s, best move %d", value, game.getTurn(), s.bestMove(game, value)));
+    }
+}
@@ -0,0 +1,9 @@
+/**
+ * Enumerates the ways Bohnenspiel can sow the beans of a move. 
+ * Both give the same position; they differ only in speed.
+ */
+public enum SowingStrategy
+{
+    LOOP,  // one bean at a time, a modulo per bean
+    TABLE  // the houses' increments and the final house looked up for the house and number of beans, a fixed 12-wide add
+}
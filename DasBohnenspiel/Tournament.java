@@ -0,0 +1,209 @@
+/**
+ * Plays many games of Bohnenspiel between a player and a list of opponents,
+ * by default the built-in players, on a pool of threads, and counts the results.
+ * Each task plays a run of games with its own players, so no player is
+ * ever shared between threads, and closes them when the run is over.
+ */
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.function.*;
+
+public class Tournament
+{
+    // how many games are played against each opponent with each colour
+    private final int gamesPerOpponent;
+    // how many threads play games
+    private final int threads;
+    // makes the player of the given colour
+    private final Function<Farbe, ? extends Player> factory;
+    // make the opponents of the given colour
+    private final List<Function<Farbe, ? extends Player>> opponents;
+    // the losses, draws and wins of the player, for each colour and opponent
+    private final AtomicIntegerArray results;
+    // how long play took, in nanoseconds
+    private long elapsed;
+    // the names of the player and the opponents, as they play
+    private volatile String name;
+    private final AtomicReferenceArray<String> opponentNames;
+    // where the games are recorded, or null
+    private GameRecordWriter recorder;
+    
+    // the number of games played by one task
+    private static final int gamesPerTask = 16;
+    
+    /**
+     * Constructs a tournament of g games per colour and opponent on t threads,
+     * between players made by f and opponents made by each of os.
+     */
+    public Tournament(int g, int t, Function<Farbe, ? extends Player> f, List<Function<Farbe, ? extends Player>> os)
+    {
+        if (g < 1) throw new IllegalArgumentException("Bad number of games: " + g);
+        if (t < 1) throw new IllegalArgumentException("Bad number of threads: " + t);
+        gamesPerOpponent = g;
+        threads = t;
+        factory = f;
+        opponents = new ArrayList<>(os);
+        results = new AtomicIntegerArray(Farbe.values().length * opponents.size() * 3);
+        opponentNames = new AtomicReferenceArray<>(opponents.size());
+    }
+    
+    /**
+     * Constructs a tournament of g games per colour and built-in strategy on t threads,
+     * with intelligent players made by f.
+     */
+    public Tournament(int g, int t, Function<Farbe, ? extends Player> f)
+    {
+        this(g, t, f, builtins());
+    }
+    
+    /**
+     * Constructs a tournament of g games per colour and built-in strategy,
+     * with default players on one thread per processor.
+     */
+    public Tournament(int g)
+    {
+        this(g, Runtime.getRuntime().availableProcessors(), BohnenspielPlayer::new);
+    }
+    
+    /**
+     * Returns makers of the built-in players, one per strategy.
+     */
+    private static List<Function<Farbe, ? extends Player>> builtins()
+    {
+        List<Function<Farbe, ? extends Player>> os = new ArrayList<>();
+        for (BuiltinStrategy k : BuiltinStrategy.values()) os.add(f -> new BohnenspielPlayerBuiltin(k, f));
+        return os;
+    }
+    
+    /**
+     * Records every game with w, or none if w is null.
+     */
+    public void setRecorder(GameRecordWriter w)
+    {
+        recorder = w;
+    }
+    
+    /**
+     * Plays all the games, and waits for them to finish.
+     */
+    public void play()
+    {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<?>> tasks = new ArrayList<>();
+        long start = System.nanoTime();
+        for (Farbe f : Farbe.values())
+            for (int o = 0; o < opponents.size(); o++)
+                for (int g = 0; g < gamesPerOpponent; g += gamesPerTask)
+                {
+                    int n = Math.min(gamesPerTask, gamesPerOpponent - g);
+                    int opponent = o;
+                    tasks.add(pool.submit(() -> playGames(f, opponent, n)));
+                }
+        try
+        {
+            for (Future<?> task : tasks) task.get();
+        }
+        catch (InterruptedException | ExecutionException e)
+        {
+            throw new IllegalStateException("Tournament game failed", e);
+        }
+        finally
+        {
+            pool.shutdownNow();
+        }
+        elapsed = System.nanoTime() - start;
+    }
+    
+    /**
+     * Plays n games between a new player of colour f and a new opponent number o.
+     */
+    private void playGames(Farbe f, int o, int n)
+    {
+        try (Player b = factory.apply(f); Player opponent = opponents.get(o).apply(Farbe.flip(f)))
+        {
+            name = b.getName();
+            opponentNames.set(o, opponent.getName());
+            for (int g = 0; g < n; g++)
+                results.incrementAndGet(index(f, o) + new ManageBohnenspielGame(b, opponent, recorder).getResult());
+        }
+    }
+    
+    /**
+     * Returns where the results for colour f against opponent o start.
+     */
+    private int index(Farbe f, int o)
+    {
+        return (f.ordinal() * opponents.size() + o) * 3;
+    }
+    
+    /**
+     * Returns the losses, draws and wins of the player with colour f against opponent o.
+     */
+    public int[] getResults(Farbe f, int o)
+    {
+        int i = index(f, o);
+        return new int[] {results.get(i), results.get(i + 1), results.get(i + 2)};
+    }
+    
+    /**
+     * Returns the losses, draws and wins of the player with colour f against strategy k,
+     * in a tournament against the built-in players.
+     */
+    public int[] getResults(Farbe f, BuiltinStrategy k)
+    {
+        return getResults(f, k.ordinal());
+    }
+    
+    /**
+     * Returns the points of the player: 2 per win and 1 per draw.
+     */
+    public int getScore()
+    {
+        int score = 0;
+        for (int i = 0; i < results.length(); i += 3) score += results.get(i + 1) + 2 * results.get(i + 2);
+        return score;
+    }
+    
+    /**
+     * Returns the most points available.
+     */
+    public int getMaxScore()
+    {
+        return 2 * getGames();
+    }
+    
+    /**
+     * Returns the number of games in the tournament.
+     */
+    public int getGames()
+    {
+        return Farbe.values().length * opponents.size() * gamesPerOpponent;
+    }
+    
+    /**
+     * Returns how many games per second were played.
+     */
+    public double getGamesPerSecond()
+    {
+        return elapsed == 0 ? 0 : getGames() * 1e9 / elapsed;
+    }
+    
+    /**
+     * Prints the results in the same form as Lab7 always has.
+     */
+    public void report()
+    {
+        for (Farbe f : Farbe.values())
+            for (int o = 0; o < opponents.size(); o++)
+            {
+                if (f == Farbe.first()) System.out.println(name + " vs " + opponentNames.get(o));
+                else                    System.out.println(opponentNames.get(o) + " vs " + name);
+                int[] r = getResults(f, o);
+                System.out.println(r[2] + " wins, " + r[1] + " draws, " + r[0] + " losses");
+            }
+        System.out.println("Total points = " + getScore() + "/" + getMaxScore());
+        System.out.println(String.format("%d games in %.1f s, %.1f games/sec", getGames(), elapsed / 1e9, getGamesPerSecond()));
+        System.out.println();
+    }
+}
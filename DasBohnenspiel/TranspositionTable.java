@@ -0,0 +1,169 @@
+/**
+ * A fixed-size transposition table for the alpha-beta search. 
+ * Entries live in two preallocated long arrays indexed by the low bits of 
+ * the Zobrist key: one holds the key, the other packs the score, the 
+ * remaining depth, the bound type, the best move and the search age. 
+ * The table is meant to persist across the moves of a game.
+ * 
+ * The table can be shared by several search threads without locking. 
+ * Each slot stores the key XORed with its entry, so a slot torn by two 
+ * threads writing at once no longer matches either key and reads as empty. 
+ * This relies on single long array elements being written atomically, 
+ * as they are on 64-bit JVMs. 
+ */
+import java.util.*;
+
+public class TranspositionTable
+{
+    // the bound types; 0 marks an empty entry
+    public static final int EXACT = 1;
+    public static final int LOWER = 2;
+    public static final int UPPER = 3;
+    
+    // where each field lives in a packed entry: score in bits 0-31, depth in 32-39,
+    // bound in 40-41, move in 42-44, age in 48-55
+    private static final int depthshift = 32;
+    private static final int boundshift = 40;
+    private static final int moveshift  = 42;
+    private static final int ageshift   = 48;
+    
+    // the keys of the stored positions, each XORed with its entry
+    private final long[] keys;
+    // the packed entries
+    private final long[] entries;
+    // the index mask, one less than the number of slots
+    private final int mask;
+    // how do we decide what to keep?
+    private final ReplacementPolicy policy;
+    // bumped by every search so that stale entries can be recognised
+    private volatile int age;
+
+    /**
+     * Constructs a table with 2^bits slots.
+     */
+    public TranspositionTable(int bits, ReplacementPolicy p)
+    {
+        if (bits < 1 || bits > 30) throw new IllegalArgumentException("Bad table size: 2^" + bits);
+        keys    = new long[1 << bits];
+        entries = new long[1 << bits];
+        mask    = (1 << bits) - 1;
+        policy  = p;
+    }
+    
+    /**
+     * Constructs a table with 2^20 slots that prefers deeper entries.
+     */
+    public TranspositionTable()
+    {
+        this(20, ReplacementPolicy.AGED);
+    }
+    
+    /**
+     * Returns the number of slots.
+     */
+    public int size()
+    {
+        return keys.length;
+    }
+    
+    /**
+     * Marks the start of a new search, so that older entries age.
+     */
+    public void newSearch()
+    {
+        age = (age + 1) & 0xFF;
+    }
+    
+    /**
+     * Empties the table.
+     */
+    public void clear()
+    {
+        Arrays.fill(keys, 0);
+        Arrays.fill(entries, 0);
+    }
+    
+    /**
+     * Returns the packed entry for key, or 0 if there is none.
+     */
+    public long probe(long key)
+    {
+        int i = (int) key & mask;
+        long entry = entries[i];
+        return (keys[i] ^ entry) == key ? entry : 0;
+    }
+    
+    /**
+     * Stores an entry for key, if the replacement policy allows it. 
+     * move is in [1, 6], or 0 if there is no best move.
+     */
+    public void store(long key, int score, int depth, int bound, int move)
+    {
+        int i = (int) key & mask;
+        long old = entries[i];
+        boolean same = (keys[i] ^ old) == key;
+        if (old != 0 && !same)
+            switch (policy)
+            {
+               case ALWAYS :
+               break;
+               
+               case DEPTH_PREFERRED :
+               if (depth(old) > depth) return;
+               break;
+               
+               case AGED :
+               if (age(old) == age && depth(old) > depth) return;
+               break;
+            }
+        // keep the old best move if we have no better idea
+        if (move == 0 && same) move = move(old);
+        long entry = score & 0xFFFFFFFFL
+                   | (long) depth << depthshift 
+                   | (long) bound << boundshift 
+                   | (long) move  << moveshift 
+                   | (long) age   << ageshift;
+        keys[i]    = key ^ entry;
+        entries[i] = entry;
+    }
+    
+    /**
+     * Returns the score of entry.
+     */
+    public static int score(long entry)
+    {
+        return (int) entry;
+    }
+    
+    /**
+     * Returns the remaining depth entry was searched to.
+     */
+    public static int depth(long entry)
+    {
+        return (int) (entry >>> depthshift) & 0xFF;
+    }
+    
+    /**
+     * Returns the bound type of entry: EXACT, LOWER or UPPER.
+     */
+    public static int bound(long entry)
+    {
+        return (int) (entry >>> boundshift) & 0x3;
+    }
+    
+    /**
+     * Returns the best move of entry, or 0 if there is none.
+     */
+    public static int move(long entry)
+    {
+        return (int) (entry >>> moveshift) & 0x7;
+    }
+    
+    /**
+     * Returns the age of the search that stored entry.
+     */
+    private static int age(long entry)
+    {
+        return (int) (entry >>> ageshift) & 0xFF;
+    }
+}